@@ -1,3 +1,5 @@
+import com.cmp.pushuptracker.gradle.CompilePoseSamplesTask
+
 plugins {
     alias(libs.plugins.android.application)
     alias(libs.plugins.kotlin.android)
@@ -39,6 +41,31 @@ android {
     buildFeatures {
         compose = true
     }
+    testOptions {
+        // Lets JVM unit tests run code that logs through android.util.Log.
+        unitTests.isReturnDefaultValues = true
+    }
+    androidResources {
+        // Pose samples are memory mapped, which needs them stored uncompressed.
+        noCompress += "bin"
+    }
+}
+
+val compilePoseSamples = tasks.register<CompilePoseSamplesTask>("compilePoseSamples") {
+    val csv = file("src/main/assets/pose/fitness_pose_samples.csv")
+    if (csv.exists()) {
+        csvFile.set(csv)
+    }
+    outputPath.set("pose/fitness_pose_samples.bin")
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(
+            compilePoseSamples,
+            CompilePoseSamplesTask::getOutputDirectory
+        )
+    }
 }
 
 dependencies {
@@ -1,75 +1,52 @@
 package com.cmp.pushuptracker.camera
 
-import android.util.Log
 import android.view.ViewGroup
 import android.widget.FrameLayout
-import androidx.camera.core.CameraSelector
-import androidx.camera.core.ImageAnalysis
 import androidx.camera.core.ImageProxy
-import androidx.camera.core.Preview
-import androidx.camera.lifecycle.ProcessCameraProvider
 import androidx.camera.view.PreviewView
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.DisposableEffect
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.rememberUpdatedState
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.LocalLifecycleOwner
 import androidx.compose.ui.viewinterop.AndroidView
-import androidx.core.content.ContextCompat
-import androidx.lifecycle.LifecycleOwner
+import com.cmp.pushuptracker.mlKit.utils.CameraXSource
 
+/**
+ * Shows the front camera and hands its frames to [onFrameAnalyzed] through [CameraXSource], on the
+ * camera source's analysis thread. [onFrameAnalyzed] must close each frame.
+ */
 @Composable
 fun CameraPreview(
     modifier: Modifier = Modifier,
     onFrameAnalyzed: (image: ImageProxy) -> Unit
 ) {
     val context = LocalContext.current
-    val lifecycleOwner = LocalContext.current as LifecycleOwner
+    val lifecycleOwner = LocalLifecycleOwner.current
+    val currentOnFrameAnalyzed by rememberUpdatedState(onFrameAnalyzed)
+    val cameraSource = remember(lifecycleOwner) {
+        CameraXSource(context, lifecycleOwner, /* graphicOverlay= */ null).apply {
+            setFacing(CameraXSource.CAMERA_FACING_FRONT)
+            setFrameAnalyzer { image -> currentOnFrameAnalyzed(image) }
+        }
+    }
+    DisposableEffect(cameraSource) {
+        onDispose { cameraSource.release() }
+    }
 
     AndroidView(
         modifier = modifier,
         factory = { ctx ->
-            val previewView = PreviewView(ctx).apply {
+            PreviewView(ctx).apply {
                 layoutParams = FrameLayout.LayoutParams(
                     ViewGroup.LayoutParams.MATCH_PARENT,
                     ViewGroup.LayoutParams.MATCH_PARENT
                 )
+                cameraSource.start(this)
             }
-
-            val cameraProviderFuture = ProcessCameraProvider.getInstance(ctx)
-
-            cameraProviderFuture.addListener({
-                val cameraProvider = cameraProviderFuture.get()
-
-                val preview = Preview.Builder().build().also {
-                    it.setSurfaceProvider(previewView.surfaceProvider)
-                }
-
-                val imageAnalysis = ImageAnalysis.Builder()
-                    .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                    .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
-                    .build()
-
-                imageAnalysis.setAnalyzer(
-                    ContextCompat.getMainExecutor(ctx),
-                    { image -> onFrameAnalyzed(image) }
-                )
-
-                val cameraSelector = CameraSelector.DEFAULT_FRONT_CAMERA
-
-                try {
-                    cameraProvider.unbindAll()
-                    cameraProvider.bindToLifecycle(
-                        lifecycleOwner,
-                        cameraSelector,
-                        preview,
-                        imageAnalysis
-                    )
-                } catch (e: Exception) {
-                    Log.e("CameraX", "Binding failed", e)
-                }
-
-            }, ContextCompat.getMainExecutor(ctx))
-
-            previewView
         }
     )
-}
\ No newline at end of file
+}
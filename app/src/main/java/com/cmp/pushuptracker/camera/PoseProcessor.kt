@@ -2,103 +2,264 @@ package com.cmp.pushuptracker.camera
 
 import android.content.Context
 import android.graphics.Bitmap
-import android.graphics.BitmapFactory
-import android.graphics.ImageFormat
-import android.graphics.Matrix
-import android.graphics.YuvImage
 import android.media.Image
 import android.os.SystemClock
 import android.util.Log
 import androidx.annotation.OptIn
 import androidx.camera.core.ExperimentalGetImage
 import androidx.camera.core.ImageProxy
+import com.cmp.pushuptracker.mlKit.utils.BitmapUtils
+import com.cmp.pushuptracker.mlKit.utils.FrameDropCounter
+import com.cmp.pushuptracker.mlKit.utils.FrameGate
+import com.cmp.pushuptracker.mlKit.utils.FrameRateGovernor
+import com.cmp.pushuptracker.mlKit.utils.TemperatureMonitor
+import com.cmp.pushuptracker.pose.LandmarkFrame
+import com.cmp.pushuptracker.pose.LandmarkFramePool
+import com.cmp.pushuptracker.pose.PoseBackend
 import com.google.mediapipe.framework.image.BitmapImageBuilder
+import com.google.mediapipe.framework.image.MPImage
 import com.google.mediapipe.tasks.core.BaseOptions
 import com.google.mediapipe.tasks.vision.core.RunningMode
 import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarker
 import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarker.PoseLandmarkerOptions
 import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarkerResult
-import java.io.ByteArrayOutputStream
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.math.max
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
 
-object PoseProcessor {
+/**
+ * Runs the MediaPipe pose landmarker on camera frames in LIVE_STREAM mode, as a [PoseBackend].
+ * Besides going to the listener as [LandmarkFrame]s, the landmarker's own results are published
+ * as [results].
+ *
+ * Frames are converted and handed to the landmarker on a dedicated inference thread, and results
+ * arrive asynchronously, so [analyze] returns right away whatever thread it's called on.
+ * Only one frame is in the landmarker at a time; frames arriving meanwhile are dropped, and
+ * counted in [frameDrops]. Each frame is timed by when the camera captured it, which the result
+ * carries as its timestamp, so rep timing isn't skewed by how long a frame waited for analysis.
+ */
+object PoseProcessor : PoseBackend {
+    private const val TAG = "PoseProcessor"
+
+    @Volatile
     private var poseLandmarker: PoseLandmarker? = null
-    private var lastAnalyzedTime = 0L
-    private const val FRAME_INTERVAL_MS = 150L
+    private val inferenceExecutor = Executors.newSingleThreadExecutor()
+    // Paces analysis by measured detection latency instead of a fixed frame interval.
+    private val frameRateGovernor = FrameRateGovernor()
+    // Sessions using the landmarker, see initPoseLandmarker. Only touched on the inference thread.
+    private var users = 0
+    // Feeds the governor while the landmarker is in use. Only touched on the inference thread.
+    private var temperatureMonitor: TemperatureMonitor? = null
+    // Capture time of the last frame handed to the landmarker, which needs increasing timestamps.
+    // Only touched on the inference thread.
+    private var lastTimestampMs = Long.MIN_VALUE
+    // Only touched while busy, so one frame at a time.
+    private var frameBitmap: Bitmap? = null
+    @Volatile
+    private var detectStartMs = 0L
+    @Volatile
+    private var listener: PoseBackend.Listener? = null
+    // Results arrive one at a time, so one frame is enough unless the listener keeps some.
+    private val framePool = LandmarkFramePool(2)
+
+    private val _results =
+        MutableSharedFlow<PoseLandmarkerResult>(
+            replay = 1,
+            onBufferOverflow = BufferOverflow.DROP_OLDEST
+        )
+
+    /**
+     * Landmarks of each analyzed frame. Collectors that fall behind only miss intermediate
+     * results, and new collectors get the latest one straight away.
+     */
+    val results: SharedFlow<PoseLandmarkerResult> = _results.asSharedFlow()
+
+    override val frameDrops = FrameDropCounter()
 
+    override val frameIntervalMs: Long
+        get() = frameRateGovernor.frameIntervalMs
+
+    // Keeps one frame in the landmarker at a time, from handing it over until its result or error
+    // comes back.
+    private val frameGate = FrameGate(frameRateGovernor, frameDrops, true)
+
+    /**
+     * Takes a use of the landmarker, creating it on the inference thread unless it's already live,
+     * so the model never loads on the caller's thread. Each call is paired with a [close].
+     */
     fun initPoseLandmarker(context: Context) {
+        val appContext = context.applicationContext
+        inferenceExecutor.execute {
+            users++
+            if (temperatureMonitor == null) {
+                temperatureMonitor = TemperatureMonitor(appContext)
+                frameRateGovernor.setTemperatureMonitor(temperatureMonitor)
+            }
+            if (poseLandmarker == null) {
+                createLandmarker(appContext)?.let { replaceLandmarker(it) }
+            }
+        }
+    }
+
+    /**
+     * Creates the landmarker ahead of the first [initPoseLandmarker], unless it's already live,
+     * and keeps it until the session that takes it is closed. Blocks until the model is loaded,
+     * so don't call it on the main thread.
+     */
+    fun preloadPoseLandmarker(context: Context) {
+        val appContext = context.applicationContext
+        inferenceExecutor.submit {
+            if (poseLandmarker == null) {
+                createLandmarker(appContext)?.let { replaceLandmarker(it) }
+            }
+        }.get()
+    }
+
+    override fun setListener(listener: PoseBackend.Listener?) {
+        this.listener = listener
+    }
+
+    /**
+     * Gives back a use taken by [initPoseLandmarker]. The landmarker is closed once no use is
+     * left; later frames are then dropped until it's initialized again.
+     */
+    override fun close() {
+        inferenceExecutor.execute {
+            users = max(users - 1, 0)
+            if (users == 0) {
+                replaceLandmarker(null)
+                frameRateGovernor.setTemperatureMonitor(null)
+                temperatureMonitor?.stop()
+                temperatureMonitor = null
+            }
+        }
+    }
+
+    /** Runs on the inference thread. Returns null if the model can't be loaded. */
+    private fun createLandmarker(context: Context): PoseLandmarker? {
         val baseOptionsBuilder =
             BaseOptions.builder().setModelAssetPath("pose_landmarker_full.task")
 
         val options = PoseLandmarkerOptions.builder()
             .setBaseOptions(baseOptionsBuilder.build())
-            .setRunningMode(RunningMode.VIDEO)
+            .setRunningMode(RunningMode.LIVE_STREAM)
+            .setResultListener(::onResult)
+            .setErrorListener(::onError)
             .build()
 
-        poseLandmarker = PoseLandmarker.createFromOptions(context, options)
+        return try {
+            PoseLandmarker.createFromOptions(context, options)
+        } catch (e: RuntimeException) {
+            Log.e(TAG, "Failed to create the pose landmarker", e)
+            null
+        }
     }
 
-    @OptIn(ExperimentalGetImage::class)
-    fun analyzeImage(imageProxy: ImageProxy, onPoseResult: (PoseLandmarkerResult?) -> Unit) {
-        val currentTime = System.currentTimeMillis()
-        if (currentTime - lastAnalyzedTime < FRAME_INTERVAL_MS) {
-            imageProxy.close()
+    /**
+     * Runs on the inference thread. A result still pending from the old landmarker never arrives,
+     * so its frame stops counting as busy here, and a new landmarker takes any first timestamp.
+     */
+    private fun replaceLandmarker(landmarker: PoseLandmarker?) {
+        poseLandmarker?.close()
+        poseLandmarker = landmarker
+        lastTimestampMs = Long.MIN_VALUE
+        frameGate.onFrameDone()
+    }
+
+    override fun analyze(image: ImageProxy) {
+        if (!frameGate.admit(image)) {
             return
         }
-        lastAnalyzedTime = currentTime
+        inferenceExecutor.execute { detect(image) }
+    }
 
+    /** Runs on the inference thread. */
+    @OptIn(ExperimentalGetImage::class)
+    private fun detect(imageProxy: ImageProxy) {
+        val landmarker = poseLandmarker
         val mediaImage = imageProxy.image
-        if (mediaImage == null) {
-            imageProxy.close()
+        if (landmarker == null || mediaImage == null) {
+            frameGate.dropUnavailable(imageProxy)
             return
         }
-
-        val bitmap = imageToBitmap(mediaImage, imageProxy.imageInfo.rotationDegrees)
-        val mpImage = BitmapImageBuilder(bitmap).build()
-
-        val timestamp = SystemClock.uptimeMillis() * 1000
+        // The landmarker rejects timestamps that don't increase, which two frames could share
+        // once truncated to milliseconds.
+        val timestampMs = max(
+            TimeUnit.NANOSECONDS.toMillis(imageProxy.imageInfo.timestamp),
+            lastTimestampMs + 1
+        )
+        lastTimestampMs = timestampMs
+        val mpImage =
+            try {
+                BitmapImageBuilder(
+                    imageToBitmap(mediaImage, imageProxy.imageInfo.rotationDegrees)
+                ).build()
+            } finally {
+                imageProxy.close()
+            }
 
         try {
-            val result = poseLandmarker?.detectForVideo(mpImage, timestamp)
-            onPoseResult(result)
+            detectStartMs = SystemClock.elapsedRealtime()
+            landmarker.detectAsync(mpImage, timestampMs)
         } catch (e: Exception) {
-            Log.e("PoseProcessor", "Error during pose detection", e)
-        } finally {
-            imageProxy.close()
+            Log.e(TAG, "Error during pose detection", e)
+            frameGate.onFrameDone()
+            frameDrops.count(FrameDropCounter.Reason.UNAVAILABLE)
         }
     }
 
-    private fun imageToBitmap(image: Image, rotation: Int): Bitmap {
-        val yBuffer = image.planes[0].buffer
-        val uBuffer = image.planes[1].buffer
-        val vBuffer = image.planes[2].buffer
-
-        val ySize = yBuffer.remaining()
-        val uSize = uBuffer.remaining()
-        val vSize = vBuffer.remaining()
-
-        val nv21 = ByteArray(ySize + uSize + vSize)
-
-        yBuffer.get(nv21, 0, ySize)
-        vBuffer.get(nv21, ySize, vSize)
-        uBuffer.get(nv21, ySize + vSize, uSize)
-
-        val yuvImage = YuvImage(nv21, ImageFormat.NV21, image.width, image.height, null)
-        val out = ByteArrayOutputStream()
-        yuvImage.compressToJpeg(android.graphics.Rect(0, 0, image.width, image.height), 90, out)
-
-        val jpegBytes = out.toByteArray()
-        val originalBitmap = BitmapFactory.decodeByteArray(jpegBytes, 0, jpegBytes.size)
-
-        // Flip horizontally for front camera
-        val matrix = Matrix().apply { preScale(-1f, 1f) }
-        return Bitmap.createBitmap(
-            originalBitmap,
-            0,
-            0,
-            originalBitmap.width,
-            originalBitmap.height,
-            matrix,
-            true
-        )
+    /** Runs on a MediaPipe thread. */
+    private fun onResult(result: PoseLandmarkerResult, input: MPImage) {
+        frameRateGovernor.onFrameProcessed(SystemClock.elapsedRealtime() - detectStartMs)
+        val frame = framePool.acquire()
+        fillLandmarkFrame(result, input.width, input.height, frame)
+        listener?.onLandmarks(frame)
+        frame.release()
+        frameGate.onFrameDone()
+        _results.tryEmit(result)
+    }
+
+    private fun onError(e: RuntimeException) {
+        Log.e(TAG, "Error during pose detection", e)
+        frameGate.onFrameDone()
+        frameDrops.count(FrameDropCounter.Reason.UNAVAILABLE)
+    }
+
+    /**
+     * Fills [frame] with the first pose in [result], converted from normalized coordinates to
+     * pixels of the [width] by [height] image it was detected in, which is already upright.
+     * MediaPipe scales Z like X.
+     */
+    private fun fillLandmarkFrame(
+        result: PoseLandmarkerResult,
+        width: Int,
+        height: Int,
+        frame: LandmarkFrame
+    ) {
+        frame.timestampMs = result.timestampMs()
+        result.landmarks().firstOrNull()?.forEachIndexed { i, landmark ->
+            frame.setLandmark(
+                i,
+                landmark.x() * width,
+                landmark.y() * height,
+                landmark.z() * width,
+                landmark.visibility().orElse(0f)
+            )
+        }
+    }
+
+    /**
+     * Converts a camera frame to an upright bitmap, as [LandmarkFrame] positions are in upright
+     * image pixels. It isn't mirrored for the front camera; like for ML Kit, the overlay does that.
+     */
+    private fun imageToBitmap(image: Image, rotationDegrees: Int): Bitmap {
+        // Frames are analyzed one at a time and the landmarker is done with the bitmap once its
+        // result is in, so the same bitmap is reused while the rotated size stays the same.
+        return BitmapUtils.getBitmap(image, rotationDegrees, /* flipX= */ false, frameBitmap)
+            .also { frameBitmap = it }
     }
 }
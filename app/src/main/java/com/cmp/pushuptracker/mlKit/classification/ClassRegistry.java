@@ -0,0 +1,54 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns pose class names to small, dense ids, so per-frame results can be arrays indexed by
+ * class rather than maps keyed by name.
+ *
+ * <p>Ids are handed out in order of first use and never change, so they stay valid across
+ * classifiers. Lookups don't lock; only registering a new name does.
+ */
+public final class ClassRegistry {
+  private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private static volatile String[] names = new String[0];
+
+  private ClassRegistry() {}
+
+  /** Returns the id of a class, registering it if it's new. */
+  public static int idOf(String className) {
+    Integer id = ids.get(className);
+    return id != null ? id : register(className);
+  }
+
+  /** Returns the id of a class if it's registered already, or -1. */
+  public static int find(String className) {
+    Integer id = ids.get(className);
+    return id != null ? id : -1;
+  }
+
+  public static String nameOf(int classId) {
+    return names[classId];
+  }
+
+  /** Returns the number of registered classes, which bounds every id handed out so far. */
+  public static int size() {
+    return names.length;
+  }
+
+  private static synchronized int register(String className) {
+    Integer id = ids.get(className);
+    if (id != null) {
+      return id;
+    }
+    int newId = names.length;
+    String[] newNames = Arrays.copyOf(names, newId + 1);
+    newNames[newId] = className;
+    // Publish the name before the id, so nameOf works for every id a reader can see.
+    names = newNames;
+    ids.put(className, newId);
+    return newId;
+  }
+}
@@ -16,46 +16,99 @@
 
 package com.cmp.pushuptracker.mlKit.classification;
 
-import static java.util.Collections.max;
-
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Represents Pose classification result as outputted by {@link PoseClassifier}. Can be manipulated.
+ *
+ * <p>Classes are addressed by their {@link ClassRegistry} id, so updates neither box nor hash. The
+ * String based methods are adapters over the id based ones.
  */
 public class ClassificationResult {
-  // For an entry in this map, the key is the class name, and the value is how many times this class
-  // appears in the top K nearest neighbors. The value is in range [0, K] and could be a float after
-  // EMA smoothing. We use this number to represent the confidence of a pose being in this class.
-  private final Map<String, Float> classConfidences;
+  // For each class id, how many times this class appears in the top K nearest neighbors. The value
+  // is in range [0, K] and could be a float after EMA smoothing. We use this number to represent
+  // the confidence of a pose being in this class.
+  private float[] confidences;
+  // Whether a confidence was set for each class id. Classes without one aren't part of the result.
+  private boolean[] present;
 
   public ClassificationResult() {
-    classConfidences = new HashMap<>();
+    confidences = new float[ClassRegistry.size()];
+    present = new boolean[confidences.length];
+  }
+
+  /** Returns an exclusive upper bound of the class ids in this result. */
+  public int getClassIdLimit() {
+    return confidences.length;
+  }
+
+  public boolean hasClass(int classId) {
+    return classId >= 0 && classId < present.length && present[classId];
+  }
+
+  public float getConfidence(int classId) {
+    return hasClass(classId) ? confidences[classId] : 0;
+  }
+
+  /** Returns the id of the class with the highest confidence, or -1 if the result is empty. */
+  public int getMaxConfidenceClassId() {
+    int maxClassId = -1;
+    for (int classId = 0; classId < confidences.length; classId++) {
+      if (present[classId] && (maxClassId < 0 || confidences[classId] > confidences[maxClassId])) {
+        maxClassId = classId;
+      }
+    }
+    return maxClassId;
+  }
+
+  public void incrementConfidence(int classId) {
+    ensureCapacity(classId);
+    confidences[classId] += 1;
+    present[classId] = true;
+  }
+
+  public void putConfidence(int classId, float confidence) {
+    ensureCapacity(classId);
+    confidences[classId] = confidence;
+    present[classId] = true;
   }
 
   public Set<String> getAllClasses() {
-    return classConfidences.keySet();
+    Set<String> classes = new HashSet<>();
+    for (int classId = 0; classId < present.length; classId++) {
+      if (present[classId]) {
+        classes.add(ClassRegistry.nameOf(classId));
+      }
+    }
+    return classes;
   }
 
   public float getClassConfidence(String className) {
-    return classConfidences.containsKey(className) ? classConfidences.get(className) : 0;
+    int classId = ClassRegistry.find(className);
+    return classId < 0 ? 0 : getConfidence(classId);
   }
+
   public String getMaxConfidenceClass() {
-    return classConfidences.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse("");  // or throw, or some default
+    int classId = getMaxConfidenceClassId();
+    return classId < 0 ? "" : ClassRegistry.nameOf(classId);
   }
 
-
   public void incrementClassConfidence(String className) {
-    classConfidences.put(className,
-        classConfidences.containsKey(className) ? classConfidences.get(className) + 1 : 1);
+    incrementConfidence(ClassRegistry.idOf(className));
   }
 
   public void putClassConfidence(String className, float confidence) {
-    classConfidences.put(className, confidence);
+    putConfidence(ClassRegistry.idOf(className), confidence);
+  }
+
+  // Classes registered after this result was created get ids past the end of the arrays.
+  private void ensureCapacity(int classId) {
+    if (classId >= confidences.length) {
+      int length = Math.max(classId + 1, ClassRegistry.size());
+      confidences = Arrays.copyOf(confidences, length);
+      present = Arrays.copyOf(present, length);
+    }
   }
 }
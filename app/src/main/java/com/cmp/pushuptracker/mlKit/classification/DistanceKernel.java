@@ -0,0 +1,46 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+/**
+ * Computes distances between the flat embedding of a pose to classify and the flat embedding of a
+ * stored {@link PoseSample}.
+ *
+ * <p>{@link PoseClassifier} is horizontal (mirror) invariant, so a kernel always measures the query
+ * both as given and mirrored along the X axis. Both the MAX and the MEAN distances are produced in
+ * the same pass, which lets the classifier rank samples by MAX and reuse the sums afterwards.
+ */
+public interface DistanceKernel {
+  // Indices of the values written to the output array of {@link #compute}.
+  int ORIGINAL_MAX = 0;
+  int FLIPPED_MAX = 1;
+  int ORIGINAL_SUM = 2;
+  int FLIPPED_SUM = 3;
+  int RESULT_SIZE = 4;
+
+  /**
+   * Computes max-abs and sum-abs distances between {@code query} and the sample starting at {@code
+   * sampleOffset} in {@code samples}, for the query and its mirror along the X axis.
+   *
+   * <p>Pairs of the embedding are evaluated in order. After each pair but the last, the kernel may
+   * give up on the sample once both running max distances exceed {@code maxThreshold}: the sample
+   * can then no longer be closer than the threshold and {@code out} is left incomplete.
+   *
+   * @param query flat embedding of the pose to classify, see {@link PoseEmbedding}
+   * @param samples flat embeddings of the stored samples, packed back to back
+   * @param sampleOffset index of the first component of the sample in {@code samples}
+   * @param maxThreshold max distance beyond which the sample may be abandoned, or {@link
+   *     Float#POSITIVE_INFINITY} to always evaluate every pair
+   * @param out receives the distances, at least {@link #RESULT_SIZE} long
+   * @return number of embedding pairs evaluated. Anything below {@link
+   *     PoseEmbedding#NUM_EMBEDDING_PAIRS} means the sample was abandoned at that depth.
+   */
+  int compute(float[] query, float[] samples, int sampleOffset, float maxThreshold, float[] out);
+
+  /**
+   * Returns the max distance between two stored samples, measured the same way as {@link
+   * #ORIGINAL_MAX} but without mirroring.
+   *
+   * <p>{@link VantagePointTree} relies on this being a metric, i.e. symmetric and satisfying the
+   * triangle inequality. Kernels that aren't should not be used with an indexed classifier.
+   */
+  float maxDistance(float[] samples, int firstOffset, int secondOffset);
+}
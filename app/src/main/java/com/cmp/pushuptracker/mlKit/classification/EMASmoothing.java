@@ -18,76 +18,151 @@ package com.cmp.pushuptracker.mlKit.classification;
 
 import android.os.SystemClock;
 
-
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
 
 /**
  * Runs EMA smoothing over a window with given stream of pose classification results.
+ *
+ * <p>Keeps one ring buffer of confidences per class and maintains each class's weighted sum
+ * incrementally, so a new result costs O(classes) regardless of the window size.
  */
 public class EMASmoothing {
   private static final int DEFAULT_WINDOW_SIZE = 10;
   private static final float DEFAULT_ALPHA = 0.2f;
 
   private static final long RESET_THRESHOLD_MS = 100;
+  // When frames are paced further apart, only a gap of this many frame intervals resets.
+  private static final int RESET_FRAME_INTERVALS = 2;
 
   private final int windowSize;
-  private final float alpha;
-  // This is a window of {@link ClassificationResult}s as outputted by the {@link PoseClassifier}.
-  // We run smoothing over this window of size {@link windowSize}.
-  private final Deque<ClassificationResult> window;
+  private final LongSupplier clock;
+  // Weight of a result relative to the next newer one.
+  private final double decay;
+  // Weight of a result once it has moved windowSize positions back, i.e. when it drops out.
+  private final double droppedWeight;
+  // Sum of the weights of a window holding i results, at index i.
+  private final float[] weightSums;
+
+  // Ring buffers of confidences, windowSize per class, indexed by class id * windowSize + slot.
+  // Classes missing from a result hold 0 for it, as they count with 0 confidence.
+  private float[] confidences;
+  // Weighted sum of each class's confidences over the window, newest weighted 1.
+  private double[] weightedSums;
+  // Index of the newest result each class was part of, or -1.
+  private long[] lastSeen;
+  // Slot the next result is written to, which holds the oldest one once the window is full.
+  private int nextSlot;
+  // Number of results in the window.
+  private int count;
+  // Index of the newest result since the window was last cleared.
+  private long newest = -1;
 
   private long lastInputMs;
+  private long resetThresholdMs = RESET_THRESHOLD_MS;
 
   public EMASmoothing() {
     this(DEFAULT_WINDOW_SIZE, DEFAULT_ALPHA);
   }
 
   public EMASmoothing(int windowSize, float alpha) {
+    this(windowSize, alpha, SystemClock::elapsedRealtime);
+  }
+
+  /** Same as {@link #EMASmoothing(int, float)}, reading time in milliseconds from {@code clock}. */
+  public EMASmoothing(int windowSize, float alpha, LongSupplier clock) {
     this.windowSize = windowSize;
-    this.alpha = alpha;
-    this.window = new LinkedBlockingDeque<>(windowSize);
+    this.clock = clock;
+    this.decay = 1.0 - alpha;
+    this.droppedWeight = Math.pow(decay, windowSize);
+    this.weightSums = new float[windowSize + 1];
+    float factor = 1;
+    for (int i = 1; i <= windowSize; i++) {
+      weightSums[i] = weightSums[i - 1] + factor;
+      factor = (float) (factor * decay);
+    }
+    this.confidences = new float[0];
+    this.weightedSums = new double[0];
+    this.lastSeen = new long[0];
+  }
+
+  /**
+   * Sets the time between frames the caller currently paces analysis to, e.g. {@link
+   * com.cmp.pushuptracker.mlKit.utils.FrameRateGovernor#getFrameIntervalMs}. Gaps are only long
+   * enough to start over when they are well beyond it, so throttled streams are still smoothed.
+   */
+  public void setFrameIntervalMs(long frameIntervalMs) {
+    resetThresholdMs = Math.max(RESET_THRESHOLD_MS, RESET_FRAME_INTERVALS * frameIntervalMs);
   }
 
   public ClassificationResult getSmoothedResult(ClassificationResult classificationResult) {
+    return getSmoothedResult(classificationResult, clock.getAsLong());
+  }
+
+  /**
+   * Same as {@link #getSmoothedResult(ClassificationResult)} for a result of a frame captured at
+   * {@code nowMs}, on the same monotonic clock as earlier calls.
+   */
+  public ClassificationResult getSmoothedResult(
+      ClassificationResult classificationResult, long nowMs) {
     // Resets memory if the input is too far away from the previous one in time.
-    long nowMs = SystemClock.elapsedRealtime();
-    if (nowMs - lastInputMs > RESET_THRESHOLD_MS) {
-      window.clear();
+    if (nowMs - lastInputMs > resetThresholdMs) {
+      clear();
     }
     lastInputMs = nowMs;
 
-    // If we are at window size, remove the last (oldest) result.
-    if (window.size() == windowSize) {
-      window.pollLast();
+    ensureCapacity(Math.max(classificationResult.getClassIdLimit(), ClassRegistry.size()));
+    boolean full = count == windowSize;
+    newest++;
+    int numClasses = lastSeen.length;
+    for (int classId = 0; classId < numClasses; classId++) {
+      int slot = classId * windowSize + nextSlot;
+      float value = classificationResult.getConfidence(classId);
+      // Age every result by one step, then drop the oldest if it falls out of the window.
+      double weightedSum = value + decay * weightedSums[classId];
+      if (full) {
+        weightedSum -= droppedWeight * confidences[slot];
+      }
+      weightedSums[classId] = weightedSum;
+      confidences[slot] = value;
+      if (classificationResult.hasClass(classId)) {
+        lastSeen[classId] = newest;
+      }
     }
-    // Insert at the beginning of the window.
-    window.addFirst(classificationResult);
-
-    Set<String> allClasses = new HashSet<>();
-    for (ClassificationResult result : window) {
-      allClasses.addAll(result.getAllClasses());
+    nextSlot = (nextSlot + 1) % windowSize;
+    if (!full) {
+      count++;
     }
 
+    // Smooth every class present anywhere in the window.
     ClassificationResult smoothedResult = new ClassificationResult();
-
-    for (String className : allClasses) {
-      float factor = 1;
-      float topSum = 0;
-      float bottomSum = 0;
-      for (ClassificationResult result : window) {
-        float value = result.getClassConfidence(className);
-
-        topSum += factor * value;
-        bottomSum += factor;
-
-        factor = (float) (factor * (1.0 - alpha));
+    float weightSum = weightSums[count];
+    for (int classId = 0; classId < numClasses; classId++) {
+      if (lastSeen[classId] > newest - count) {
+        smoothedResult.putConfidence(classId, (float) (weightedSums[classId] / weightSum));
       }
-      smoothedResult.putClassConfidence(className, topSum / bottomSum);
     }
-
     return smoothedResult;
   }
+
+  private void clear() {
+    Arrays.fill(confidences, 0);
+    Arrays.fill(weightedSums, 0);
+    Arrays.fill(lastSeen, -1);
+    nextSlot = 0;
+    count = 0;
+    newest = -1;
+  }
+
+  // Grows the buffers when classes get registered mid-stream. New classes start out as absent.
+  private void ensureCapacity(int numClasses) {
+    int oldNumClasses = lastSeen.length;
+    if (numClasses <= oldNumClasses) {
+      return;
+    }
+    confidences = Arrays.copyOf(confidences, numClasses * windowSize);
+    weightedSums = Arrays.copyOf(weightedSums, numClasses);
+    lastSeen = Arrays.copyOf(lastSeen, numClasses);
+    Arrays.fill(lastSeen, oldNumClasses, numClasses, -1);
+  }
 }
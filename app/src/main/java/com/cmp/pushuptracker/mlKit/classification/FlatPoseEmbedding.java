@@ -0,0 +1,126 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+/**
+ * The embedding math behind {@link PoseEmbedding}, on flat landmark arrays and without any
+ * dependencies, so the build can compile this same file to precompute the pose samples asset.
+ * Bump the asset format version in PoseSampleEncoder and {@link PoseSampleLoader} whenever it
+ * changes.
+ */
+public final class FlatPoseEmbedding {
+  public static final int NUM_LANDMARKS = 33;
+  public static final int NUM_DIMS = 3;
+
+  // Landmark indices, the same as the PoseLandmark constants.
+  private static final int LEFT_SHOULDER = 11;
+  private static final int RIGHT_SHOULDER = 12;
+  private static final int LEFT_ELBOW = 13;
+  private static final int RIGHT_ELBOW = 14;
+  private static final int LEFT_WRIST = 15;
+  private static final int RIGHT_WRIST = 16;
+  private static final int LEFT_HIP = 23;
+  private static final int RIGHT_HIP = 24;
+  private static final int LEFT_KNEE = 25;
+  private static final int RIGHT_KNEE = 26;
+  private static final int LEFT_ANKLE = 27;
+  private static final int RIGHT_ANKLE = 28;
+
+  // Multiplier to apply to the torso to get minimal body size. Picked this by experimentation.
+  private static final float TORSO_MULTIPLIER = 2.5f;
+
+  // We use several pairwise 3D distances to form pose embedding. These were selected
+  // based on experimentation for best results with our default pose classes as captued in the
+  // pose samples csv. Feel free to play with this and add or remove for your use-cases.
+  // The first one is from the center of the hips to the center of the shoulders. These are the
+  // rest, grouped by number of joints between the pairs. Each embedding entry is the second
+  // landmark minus the first.
+  private static final int[] PAIRS = {
+    // One joint.
+    LEFT_SHOULDER, LEFT_ELBOW, RIGHT_SHOULDER, RIGHT_ELBOW,
+    LEFT_ELBOW, LEFT_WRIST, RIGHT_ELBOW, RIGHT_WRIST,
+    LEFT_HIP, LEFT_KNEE, RIGHT_HIP, RIGHT_KNEE,
+    LEFT_KNEE, LEFT_ANKLE, RIGHT_KNEE, RIGHT_ANKLE,
+    // Two joints.
+    LEFT_SHOULDER, LEFT_WRIST, RIGHT_SHOULDER, RIGHT_WRIST,
+    LEFT_HIP, LEFT_ANKLE, RIGHT_HIP, RIGHT_ANKLE,
+    // Four joints.
+    LEFT_HIP, LEFT_WRIST, RIGHT_HIP, RIGHT_WRIST,
+    // Five joints.
+    LEFT_SHOULDER, LEFT_ANKLE, RIGHT_SHOULDER, RIGHT_ANKLE,
+    LEFT_HIP, LEFT_WRIST, RIGHT_HIP, RIGHT_WRIST,
+    // Cross body.
+    LEFT_ELBOW, RIGHT_ELBOW, LEFT_KNEE, RIGHT_KNEE,
+    LEFT_WRIST, RIGHT_WRIST, LEFT_ANKLE, RIGHT_ANKLE,
+  };
+
+  // Number of pairwise distances in an embedding.
+  public static final int NUM_EMBEDDING_PAIRS = PAIRS.length / 2 + 1;
+  // Length of a flat embedding, laid out as X1,Y1,Z1,X2,Y2,Z2...
+  public static final int SIZE = NUM_EMBEDDING_PAIRS * NUM_DIMS;
+
+  /**
+   * Normalizes the flat landmarks {@code lm}, laid out as X0,Y0,Z0,X1,Y1,Z1..., in place and
+   * writes their embedding to {@code out}.
+   */
+  public static void compute(float[] lm, float[] out) {
+    normalize(lm);
+    for (int d = 0; d < NUM_DIMS; d++) {
+      out[d] =
+          average(lm, LEFT_SHOULDER, RIGHT_SHOULDER, d) - average(lm, LEFT_HIP, RIGHT_HIP, d);
+    }
+    for (int p = 0; p < PAIRS.length; p += 2) {
+      int from = PAIRS[p] * NUM_DIMS;
+      int to = PAIRS[p + 1] * NUM_DIMS;
+      int i = (p / 2 + 1) * NUM_DIMS;
+      for (int d = 0; d < NUM_DIMS; d++) {
+        out[i + d] = lm[to + d] - lm[from + d];
+      }
+    }
+  }
+
+  private static void normalize(float[] lm) {
+    // Normalize translation.
+    float centerX = average(lm, LEFT_HIP, RIGHT_HIP, 0);
+    float centerY = average(lm, LEFT_HIP, RIGHT_HIP, 1);
+    float centerZ = average(lm, LEFT_HIP, RIGHT_HIP, 2);
+    for (int i = 0; i < lm.length; i += NUM_DIMS) {
+      lm[i] -= centerX;
+      lm[i + 1] -= centerY;
+      lm[i + 2] -= centerZ;
+    }
+
+    // Normalize scale.
+    float scale = 1 / getPoseSize(lm);
+    for (int i = 0; i < lm.length; i++) {
+      // Multiplication by 100 is not required, but makes it easier to debug.
+      lm[i] = lm[i] * scale * 100;
+    }
+  }
+
+  // Translation normalization should've been done prior to calling this method.
+  private static float getPoseSize(float[] lm) {
+    // Note: This approach uses only 2D landmarks to compute pose size as using Z wasn't helpful
+    // in our experimentation but you're welcome to tweak.
+    float hipsX = average(lm, LEFT_HIP, RIGHT_HIP, 0);
+    float hipsY = average(lm, LEFT_HIP, RIGHT_HIP, 1);
+    float shouldersX = average(lm, LEFT_SHOULDER, RIGHT_SHOULDER, 0);
+    float shouldersY = average(lm, LEFT_SHOULDER, RIGHT_SHOULDER, 1);
+    float torsoSize = (float) Math.hypot(shouldersX - hipsX, shouldersY - hipsY);
+
+    float maxDistance = torsoSize * TORSO_MULTIPLIER;
+    // torsoSize * TORSO_MULTIPLIER is the floor we want based on experimentation but actual size
+    // can be bigger for a given pose depending on extension of limbs etc so we calculate that.
+    for (int i = 0; i < lm.length; i += NUM_DIMS) {
+      float distance = (float) Math.hypot(lm[i] - hipsX, lm[i + 1] - hipsY);
+      if (distance > maxDistance) {
+        maxDistance = distance;
+      }
+    }
+    return maxDistance;
+  }
+
+  private static float average(float[] lm, int a, int b, int dim) {
+    return (lm[a * NUM_DIMS + dim] + lm[b * NUM_DIMS + dim]) * 0.5f;
+  }
+
+  private FlatPoseEmbedding() {}
+}
@@ -0,0 +1,42 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.FLAT_EMBEDDING_SIZE;
+
+import java.util.List;
+
+/**
+ * Pose samples in the form {@link PoseClassifier} reads them: every sample's flat embedding packed
+ * back to back, {@link PoseEmbedding#FLAT_EMBEDDING_SIZE} floats per sample, and the {@link
+ * ClassRegistry} id of each sample's class. Samples loaded from the binary asset are read straight
+ * into this form, see {@link PoseSampleLoader}.
+ */
+public final class PackedPoseSamples {
+  final float[] embeddings;
+  final int[] classIds;
+
+  PackedPoseSamples(float[] embeddings, int[] classIds) {
+    if (embeddings.length != classIds.length * FLAT_EMBEDDING_SIZE) {
+      throw new IllegalArgumentException(
+          embeddings.length + " embedding floats for " + classIds.length + " samples");
+    }
+    this.embeddings = embeddings;
+    this.classIds = classIds;
+  }
+
+  /** Packs the embeddings of {@code poseSamples}. */
+  public static PackedPoseSamples of(List<PoseSample> poseSamples) {
+    float[] embeddings = new float[poseSamples.size() * FLAT_EMBEDDING_SIZE];
+    int[] classIds = new int[poseSamples.size()];
+    for (int i = 0; i < poseSamples.size(); i++) {
+      PoseSample poseSample = poseSamples.get(i);
+      System.arraycopy(poseSample.getFlatEmbedding(), 0,
+          embeddings, i * FLAT_EMBEDDING_SIZE, FLAT_EMBEDDING_SIZE);
+      classIds[i] = ClassRegistry.idOf(poseSample.getClassName());
+    }
+    return new PackedPoseSamples(embeddings, classIds);
+  }
+
+  public int size() {
+    return classIds.length;
+  }
+}
@@ -16,30 +16,32 @@
 
 package com.cmp.pushuptracker.mlKit.classification;
 
-import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.getPoseEmbedding;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.maxAbs;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.multiply;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.multiplyAll;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.subtract;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.sumAbs;
-import static java.lang.Math.max;
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.FLIPPED_MAX;
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.FLIPPED_SUM;
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.ORIGINAL_MAX;
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.ORIGINAL_SUM;
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.RESULT_SIZE;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.FLAT_EMBEDDING_SIZE;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.NUM_EMBEDDING_PAIRS;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.SCRATCH_SIZE;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.getFlatPoseEmbedding;
 import static java.lang.Math.min;
 
-import android.util.Pair;
-
+import com.cmp.pushuptracker.pose.LandmarkFrame;
 import com.google.mlkit.vision.common.PointF3D;
-import com.google.mlkit.vision.pose.Pose;
-import com.google.mlkit.vision.pose.PoseLandmark;
 
-import java.util.ArrayList;
+import androidx.annotation.Nullable;
+
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
- * Classifies {link Pose} based on given {@link PoseSample}s.
+ * Classifies {@link LandmarkFrame}s based on given {@link PoseSample}s.
  *
  * <p>Inspired by K-Nearest Neighbors Algorithm with outlier filtering.
  * https://en.wikipedia.org/wiki/K-nearest_neighbors_algorithm
+ *
+ * <p>Instances are immutable and {@code classify} is safe to call from any number of threads, so
+ * one classifier can be shared process-wide, see {@link PoseClassifierCache}.
  */
 public class PoseClassifier {
     private static final String TAG = "PoseClassifier";
@@ -48,10 +50,22 @@ public class PoseClassifier {
     // Note Z has a lower weight as it is generally less accurate than X & Y.
     private static final PointF3D AXES_WEIGHTS = PointF3D.from(1, 1, 0.2f);
 
-    private final List<PoseSample> poseSamples;
     private final int maxDistanceTopK;
     private final int meanDistanceTopK;
-    private final PointF3D axesWeights;
+    private final DistanceKernel distanceKernel;
+    // Whether the MAX stage may abandon a sample once it can no longer make the top K.
+    private final boolean pruningEnabled;
+    // Embeddings of all samples packed back to back, FLAT_EMBEDDING_SIZE floats per sample, so the
+    // classification loop reads plain floats instead of allocating a PointF3D per operation.
+    private final float[] sampleEmbeddings;
+    // ClassRegistry id of each sample's class.
+    private final int[] sampleClassIds;
+    // Optional index over sampleEmbeddings that lets the MAX stage skip samples in bulk.
+    @Nullable
+    private final VantagePointTree index;
+    // Scratch buffers reused across frames. Kept per thread so classify() stays safe to call from
+    // more than one thread without allocating per sample.
+    private final ThreadLocal<Workspace> workspace;
 
     public PoseClassifier(List<PoseSample> poseSamples) {
         this(poseSamples, MAX_DISTANCE_TOP_K, MEAN_DISTANCE_TOP_K, AXES_WEIGHTS);
@@ -59,18 +73,28 @@ public class PoseClassifier {
 
     public PoseClassifier(List<PoseSample> poseSamples, int maxDistanceTopK,
                           int meanDistanceTopK, PointF3D axesWeights) {
-        this.poseSamples = poseSamples;
-        this.maxDistanceTopK = maxDistanceTopK;
-        this.meanDistanceTopK = meanDistanceTopK;
-        this.axesWeights = axesWeights;
+        this(PackedPoseSamples.of(poseSamples), maxDistanceTopK, meanDistanceTopK,
+                new WeightedDistanceKernel(axesWeights), /* pruningEnabled= */ true,
+                /* indexEnabled= */ false);
     }
 
-    private static List<PointF3D> extractPoseLandmarks(Pose pose) {
-        List<PointF3D> landmarks = new ArrayList<>();
-        for (PoseLandmark poseLandmark : pose.getAllPoseLandmarks()) {
-            landmarks.add(poseLandmark.getPosition3D());
-        }
-        return landmarks;
+    /** Takes over the arrays of {@code poseSamples} rather than copying them. */
+    private PoseClassifier(PackedPoseSamples poseSamples, int maxDistanceTopK,
+                           int meanDistanceTopK, DistanceKernel distanceKernel,
+                           boolean pruningEnabled, boolean indexEnabled) {
+        this.maxDistanceTopK = maxDistanceTopK;
+        this.meanDistanceTopK = meanDistanceTopK;
+        this.distanceKernel = distanceKernel;
+        this.pruningEnabled = pruningEnabled;
+        this.sampleEmbeddings = poseSamples.embeddings;
+        this.sampleClassIds = poseSamples.classIds;
+        this.index = indexEnabled ? new VantagePointTree(sampleEmbeddings, distanceKernel) : null;
+        this.workspace = new ThreadLocal<Workspace>() {
+            @Override
+            protected Workspace initialValue() {
+                return new Workspace();
+            }
+        };
     }
 
     /**
@@ -83,90 +107,181 @@ public class PoseClassifier {
         return min(maxDistanceTopK, meanDistanceTopK);
     }
 
-    public ClassificationResult classify(Pose pose) {
-        return classify(extractPoseLandmarks(pose));
+    /**
+     * Returns the pruning counters of the last frame classified on the calling thread. The returned
+     * object is updated in place by the next call to {@code classify} on the same thread.
+     */
+    public PruningStats getLastPruningStats() {
+        return workspace.get().pruningStats;
+    }
+
+    /** Classifies the pose in {@code landmarks}, reading positions straight from the frame. */
+    public ClassificationResult classify(LandmarkFrame landmarks) {
+        // Return early if no landmarks detected.
+        if (!landmarks.hasPose()) {
+            return new ClassificationResult();
+        }
+        Workspace workspace = this.workspace.get();
+        getFlatPoseEmbedding(landmarks, workspace.scratch, workspace.query);
+        return classify(workspace);
     }
 
     public ClassificationResult classify(List<PointF3D> landmarks) {
-        ClassificationResult result = new ClassificationResult();
         // Return early if no landmarks detected.
         if (landmarks.isEmpty()) {
-            return result;
+            return new ClassificationResult();
         }
+        Workspace workspace = this.workspace.get();
+        System.arraycopy(getFlatPoseEmbedding(landmarks), 0, workspace.query, 0,
+                FLAT_EMBEDDING_SIZE);
+        return classify(workspace);
+    }
 
-        // We do flipping on X-axis so we are horizontal (mirror) invariant.
-        List<PointF3D> flippedLandmarks = new ArrayList<>(landmarks);
-        multiplyAll(flippedLandmarks, PointF3D.from(-1, 1, 1));
-
-        List<PointF3D> embedding = getPoseEmbedding(landmarks);
-        List<PointF3D> flippedEmbedding = getPoseEmbedding(flippedLandmarks);
-
+    /** Classifies the pose whose embedding is in {@code workspace.query}. */
+    private ClassificationResult classify(Workspace workspace) {
+        ClassificationResult result = new ClassificationResult();
+        // We compare against the pose flipped on X-axis as well so we are horizontal (mirror)
+        // invariant. The {@link DistanceKernel} derives the flipped embedding from this one.
 
         // Classification is done in two stages:
         //  * First we pick top-K samples by MAX distance. It allows to remove samples that are almost
         //    the same as given pose, but maybe has few joints bent in the other direction.
         //  * Then we pick top-K samples by MEAN distance. After outliers are removed, we pick samples
         //    that are closest by average.
+        // The kernel produces both distances in one pass, so the second stage only re-ranks the
+        // mean distances cached during the first one.
 
-        // Keeps max distance on top so we can pop it when top_k size is reached.
-        PriorityQueue<Pair<PoseSample, Float>> maxDistances = new PriorityQueue<>(
-                maxDistanceTopK, (o1, o2) -> -Float.compare(o1.second, o2.second));
         // Retrieve top K poseSamples by least distance to remove outliers.
-        for (PoseSample poseSample : poseSamples) {
-            List<PointF3D> sampleEmbedding = poseSample.getEmbedding();
-
-            float originalMax = 0;
-            float flippedMax = 0;
-            for (int i = 0; i < embedding.size(); i++) {
-                originalMax =
-                        max(
-                                originalMax,
-                                maxAbs(multiply(subtract(embedding.get(i), sampleEmbedding.get(i)), axesWeights)));
-                flippedMax =
-                        max(
-                                flippedMax,
-                                maxAbs(
-                                        multiply(
-                                                subtract(flippedEmbedding.get(i), sampleEmbedding.get(i)), axesWeights)));
-            }
-            // Set the max distance as min of original and flipped max distance.
-            maxDistances.add(new Pair<>(poseSample, min(originalMax, flippedMax)));
-            // We only want to retain top n so pop the highest distance.
-            if (maxDistances.size() > maxDistanceTopK) {
-                maxDistances.poll();
+        TopKSelector maxDistances = workspace.maxDistances;
+        maxDistances.clear();
+        workspace.pruningStats.reset();
+        if (index != null) {
+            // Only visits samples the index can't rule out; retains the same top K as the scan.
+            index.search(workspace, workspace.distances);
+        } else {
+            for (int sampleIndex = 0; sampleIndex < sampleClassIds.length; sampleIndex++) {
+                workspace.visit(sampleIndex, maxDistances.threshold(), workspace.distances);
             }
         }
 
-        // Keeps higher mean distances on top so we can pop it when top_k size is reached.
-        PriorityQueue<Pair<PoseSample, Float>> meanDistances = new PriorityQueue<>(
-                meanDistanceTopK, (o1, o2) -> -Float.compare(o1.second, o2.second));
         // Retrive top K poseSamples by least mean distance to remove outliers.
-        for (Pair<PoseSample, Float> sampleDistances : maxDistances) {
-            PoseSample poseSample = sampleDistances.first;
-            List<PointF3D> sampleEmbedding = poseSample.getEmbedding();
-
-            float originalSum = 0;
-            float flippedSum = 0;
-            for (int i = 0; i < embedding.size(); i++) {
-                originalSum += sumAbs(multiply(
-                        subtract(embedding.get(i), sampleEmbedding.get(i)), axesWeights));
-                flippedSum += sumAbs(
-                        multiply(subtract(flippedEmbedding.get(i), sampleEmbedding.get(i)), axesWeights));
+        TopKSelector meanDistances = workspace.meanDistances;
+        meanDistances.clear();
+        for (int i = 0; i < maxDistances.size(); i++) {
+            int sampleIndex = maxDistances.getIndex(i);
+            meanDistances.offer(sampleIndex, workspace.meanDistanceCache[sampleIndex]);
+        }
+
+        for (int i = 0; i < meanDistances.size(); i++) {
+            result.incrementConfidence(sampleClassIds[meanDistances.getIndex(i)]);
+        }
+
+        return result;
+    }
+
+    /** Per-thread buffers used by the {@code classify} methods. */
+    private class Workspace implements VantagePointTree.Visitor {
+        final TopKSelector maxDistances = new TopKSelector(maxDistanceTopK);
+        final TopKSelector meanDistances = new TopKSelector(meanDistanceTopK);
+        // Mean distance of each sample retained by the MAX stage, indexed by sample.
+        final float[] meanDistanceCache = new float[sampleClassIds.length];
+        final float[] distances = new float[RESULT_SIZE];
+        final PruningStats pruningStats = new PruningStats();
+        // Flat embedding of the pose being classified.
+        final float[] query = new float[FLAT_EMBEDDING_SIZE];
+        // Landmarks of the pose being classified, normalized for the embedding.
+        final float[] scratch = new float[SCRATCH_SIZE];
+
+        @Override
+        public float threshold() {
+            return maxDistances.threshold();
+        }
+
+        /** Runs the MAX stage for one sample. */
+        @Override
+        public boolean visit(int sampleIndex, float maxThreshold, float[] out) {
+            // Once the top K is full, a sample whose original and flipped max distances both
+            // exceed the current K-th best can't be retained, so the kernel may stop early.
+            int depth = distanceKernel.compute(query, sampleEmbeddings,
+                    sampleIndex * FLAT_EMBEDDING_SIZE,
+                    pruningEnabled ? maxThreshold : Float.POSITIVE_INFINITY, out);
+            pruningStats.record(depth);
+            if (depth < NUM_EMBEDDING_PAIRS) {
+                return false;
             }
-            // Set the mean distance as min of original and flipped mean distances.
-            float meanDistance = min(originalSum, flippedSum) / (embedding.size() * 2);
-            meanDistances.add(new Pair<>(poseSample, meanDistance));
-            // We only want to retain top k so pop the highest mean distance.
-            if (meanDistances.size() > meanDistanceTopK) {
-                meanDistances.poll();
+            // Set the max distance as min of original and flipped max distance.
+            float maxDistance = min(out[ORIGINAL_MAX], out[FLIPPED_MAX]);
+            if (maxDistances.offer(sampleIndex, maxDistance)) {
+                // Set the mean distance as min of original and flipped mean distances.
+                meanDistanceCache[sampleIndex] =
+                        min(out[ORIGINAL_SUM], out[FLIPPED_SUM]) / (NUM_EMBEDDING_PAIRS * 2);
             }
+            return true;
         }
+    }
 
-        for (Pair<PoseSample, Float> sampleDistances : meanDistances) {
-            String className = sampleDistances.first.getClassName();
-            result.incrementClassConfidence(className);
+    /** Builder of {@link PoseClassifier}. */
+    public static class Builder {
+        private final PackedPoseSamples poseSamples;
+        private int maxDistanceTopK = MAX_DISTANCE_TOP_K;
+        private int meanDistanceTopK = MEAN_DISTANCE_TOP_K;
+        private DistanceKernel distanceKernel;
+        private boolean pruningEnabled = true;
+        private boolean indexEnabled = false;
+
+        public Builder(List<PoseSample> poseSamples) {
+            this(PackedPoseSamples.of(poseSamples));
         }
 
-        return result;
+        /** The classifier takes over the arrays of {@code poseSamples}, which must stay as is. */
+        public Builder(PackedPoseSamples poseSamples) {
+            this.poseSamples = poseSamples;
+        }
+
+        public Builder setMaxDistanceTopK(int maxDistanceTopK) {
+            this.maxDistanceTopK = maxDistanceTopK;
+            return this;
+        }
+
+        public Builder setMeanDistanceTopK(int meanDistanceTopK) {
+            this.meanDistanceTopK = meanDistanceTopK;
+            return this;
+        }
+
+        /** Defaults to a {@link WeightedDistanceKernel} that gives Z a lower weight than X & Y. */
+        public Builder setDistanceKernel(DistanceKernel distanceKernel) {
+            this.distanceKernel = distanceKernel;
+            return this;
+        }
+
+        /**
+         * Enables early exit in the MAX stage. Results are identical either way; see {@link
+         * PruningStats} for how much work it saves. Enabled by default.
+         */
+        public Builder setPruningEnabled(boolean pruningEnabled) {
+            this.pruningEnabled = pruningEnabled;
+            return this;
+        }
+
+        /**
+         * Builds a {@link VantagePointTree} over the samples so the MAX stage can skip groups of
+         * them. Results are identical either way, but building costs O(n log n) kernel calls, so it
+         * only pays off for larger sample sets and should happen off the main thread. The distance
+         * kernel must be a metric. Disabled by default.
+         */
+        public Builder setIndexEnabled(boolean indexEnabled) {
+            this.indexEnabled = indexEnabled;
+            return this;
+        }
+
+        public PoseClassifier build() {
+            return new PoseClassifier(
+                    poseSamples,
+                    maxDistanceTopK,
+                    meanDistanceTopK,
+                    distanceKernel != null ? distanceKernel : new WeightedDistanceKernel(AXES_WEIGHTS),
+                    pruningEnabled,
+                    indexEnabled);
+        }
     }
 }
@@ -0,0 +1,72 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Process-wide holder of the {@link PoseClassifier}, so the pose samples are loaded and indexed
+ * once rather than by every camera session.
+ */
+@Singleton
+public class PoseClassifierCache {
+  private static final String POSE_SAMPLES_FILE = "pose/fitness_pose_samples.csv";
+  // Embeddings precomputed from POSE_SAMPLES_FILE at build time. Preferred when present.
+  private static final String POSE_SAMPLES_BINARY_FILE = "pose/fitness_pose_samples.bin";
+  // Below this many samples a linear scan is about as fast as searching a spatial index.
+  private static final int MIN_SAMPLES_FOR_INDEX = 1000;
+
+  private final Context context;
+  @Nullable
+  private volatile PoseClassifier poseClassifier;
+
+  @Inject
+  public PoseClassifierCache(@ApplicationContext Context context) {
+    this.context = context;
+  }
+
+  /** Returns the shared classifier, loading it on first use. */
+  @WorkerThread
+  public PoseClassifier get() {
+    PoseClassifier result = poseClassifier;
+    if (result == null) {
+      synchronized (this) {
+        result = poseClassifier;
+        if (result == null) {
+          result = load();
+          poseClassifier = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Returns the shared classifier if it has been loaded already, without blocking. */
+  @Nullable
+  public PoseClassifier getIfLoaded() {
+    return poseClassifier;
+  }
+
+  private PoseClassifier load() {
+    Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
+    PackedPoseSamples poseSamples =
+        PoseSampleLoader.loadBinary(context.getAssets(), POSE_SAMPLES_BINARY_FILE);
+    if (poseSamples == null) {
+      poseSamples =
+          PackedPoseSamples.of(PoseSampleLoader.loadCsv(context.getAssets(), POSE_SAMPLES_FILE));
+    }
+    // Any index is built here, once per process, rather than per session.
+    return new PoseClassifier.Builder(poseSamples)
+        .setIndexEnabled(poseSamples.size() >= MIN_SAMPLES_FOR_INDEX)
+        .build();
+  }
+}
@@ -16,86 +16,73 @@
 
 package com.cmp.pushuptracker.mlKit.classification;
 
-import android.content.Context;
 import android.media.AudioManager;
 import android.media.ToneGenerator;
 import android.os.Looper;
-import android.util.Log;
 
 import androidx.annotation.WorkerThread;
 
+import com.cmp.pushuptracker.pose.LandmarkFrame;
 import com.google.common.base.Preconditions;
-import com.google.mlkit.vision.pose.Pose;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 /**
- * Accepts a stream of {@link Pose} for classification and Rep counting.
+ * Accepts a stream of {@link LandmarkFrame}s for classification and Rep counting.
+ *
+ * <p>Holds the per-session state on top of a shared {@link PoseClassifier}, so a new processor is
+ * cheap to create for every camera session.
  */
 public class PoseClassifierProcessor {
   private static final String TAG = "PoseClassifierProcessor";
-  private static final String POSE_SAMPLES_FILE = "pose/fitness_pose_samples.csv";
 
   // Specify classes for which we want rep counting.
-  // These are the labels in the given {@code POSE_SAMPLES_FILE}. You can set your own class labels
-  // for your pose samples.
-  private static final String PUSHUPS_CLASS = "pushups_down";
+  // These are the labels in the pose samples loaded by {@link PoseClassifierCache}. You can set
+  // your own class labels for your pose samples. Push-ups aren't among them: they are counted by
+  // elbow angle, see {@link com.cmp.pushuptracker.pose.AngleRepCounter}, and only classified here.
   private static final String SQUATS_CLASS = "squats_down";
   private static final String[] POSE_CLASSES = {
-    PUSHUPS_CLASS, SQUATS_CLASS
+    SQUATS_CLASS
   };
 
   private final boolean isStreamMode;
+  private final PoseClassifier poseClassifier;
 
   private EMASmoothing emaSmoothing;
   private List<RepetitionCounter> repCounters;
-  private PoseClassifier poseClassifier;
   private String lastRepResult;
 
-  @WorkerThread
-  public PoseClassifierProcessor(Context context, boolean isStreamMode) {
-    Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
+  /**
+   * Creates a processor for one session around the shared {@link PoseClassifier}, see {@link
+   * PoseClassifierCache}. Only the smoothing window and rep counters belong to the processor.
+   */
+  public PoseClassifierProcessor(PoseClassifier poseClassifier, boolean isStreamMode) {
+    this.poseClassifier = poseClassifier;
     this.isStreamMode = isStreamMode;
     if (isStreamMode) {
       emaSmoothing = new EMASmoothing();
       repCounters = new ArrayList<>();
       lastRepResult = "";
+      for (String className : POSE_CLASSES) {
+        repCounters.add(new RepetitionCounter(className));
+      }
     }
-    loadPoseSamples(context);
   }
 
-  private void loadPoseSamples(Context context) {
-    List<PoseSample> poseSamples = new ArrayList<>();
-    try {
-      BufferedReader reader = new BufferedReader(
-          new InputStreamReader(context.getAssets().open(POSE_SAMPLES_FILE)));
-      String csvLine = reader.readLine();
-      while (csvLine != null) {
-        // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
-        PoseSample poseSample = PoseSample.getPoseSample(csvLine, ",");
-        if (poseSample != null) {
-          poseSamples.add(poseSample);
-        }
-        csvLine = reader.readLine();
-      }
-    } catch (IOException e) {
-      Log.e(TAG, "Error when loading pose samples.\n" + e);
-    }
-    poseClassifier = new PoseClassifier(poseSamples);
+  /**
+   * Sets the time between analyzed frames, while analysis is throttled, so smoothing isn't reset
+   * by frames that are merely paced apart. Only matters in stream mode.
+   */
+  public void setFrameIntervalMs(long frameIntervalMs) {
     if (isStreamMode) {
-      for (String className : POSE_CLASSES) {
-        repCounters.add(new RepetitionCounter(className));
-      }
+      emaSmoothing.setFrameIntervalMs(frameIntervalMs);
     }
   }
 
   /**
-   * Given a new {@link Pose} input, returns a list of formatted {@link String}s with Pose
+   * Given the landmarks of a new frame, returns a list of formatted {@link String}s with Pose
    * classification results.
    *
    * <p>Currently it returns up to 2 strings as following:
@@ -103,18 +90,18 @@ public class PoseClassifierProcessor {
    * 1: PoseClass : [0.0-1.0] confidence
    */
   @WorkerThread
-  public List<String> getPoseResult(Pose pose) {
+  public List<String> getPoseResult(LandmarkFrame landmarks) {
     Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
     List<String> result = new ArrayList<>();
-    ClassificationResult classification = poseClassifier.classify(pose);
+    ClassificationResult classification = poseClassifier.classify(landmarks);
 
     // Update {@link RepetitionCounter}s if {@code isStreamMode}.
     if (isStreamMode) {
       // Feed pose to smoothing even if no pose found.
-      classification = emaSmoothing.getSmoothedResult(classification);
+      classification = emaSmoothing.getSmoothedResult(classification, landmarks.getTimestampMs());
 
       // Return early without updating repCounter if no pose found.
-      if (pose.getAllPoseLandmarks().isEmpty()) {
+      if (!landmarks.hasPose()) {
         result.add(lastRepResult);
         return result;
       }
@@ -135,13 +122,13 @@ public class PoseClassifierProcessor {
     }
 
     // Add maxConfidence class of current frame to result if pose is found.
-    if (!pose.getAllPoseLandmarks().isEmpty()) {
-      String maxConfidenceClass = classification.getMaxConfidenceClass();
+    if (landmarks.hasPose()) {
+      int maxConfidenceClassId = classification.getMaxConfidenceClassId();
       String maxConfidenceClassResult = String.format(
           Locale.US,
           "%s : %.2f confidence",
-          maxConfidenceClass,
-          classification.getClassConfidence(maxConfidenceClass)
+          maxConfidenceClassId < 0 ? "" : ClassRegistry.nameOf(maxConfidenceClassId),
+          classification.getConfidence(maxConfidenceClassId)
               / poseClassifier.confidenceRange());
       result.add(maxConfidenceClassResult);
     }
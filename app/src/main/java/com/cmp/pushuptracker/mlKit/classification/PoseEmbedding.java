@@ -16,126 +16,66 @@
 
 package com.cmp.pushuptracker.mlKit.classification;
 
-import static com.cmp.pushuptracker.mlKit.classification.Utils.average;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.l2Norm2D;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.multiplyAll;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.subtract;
-import static com.cmp.pushuptracker.mlKit.classification.Utils.subtractAll;
-
+import com.cmp.pushuptracker.pose.LandmarkFrame;
 import com.google.mlkit.vision.common.PointF3D;
-import com.google.mlkit.vision.pose.PoseLandmark;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Generates embedding for given list of Pose landmarks.
+ * Generates embedding for given list of Pose landmarks. The math itself is in {@link
+ * FlatPoseEmbedding}.
  */
 public class PoseEmbedding {
-  // Multiplier to apply to the torso to get minimal body size. Picked this by experimentation.
-  private static final float TORSO_MULTIPLIER = 2.5f;
+  // Number of pairwise distances in an embedding.
+  public static final int NUM_EMBEDDING_PAIRS = FlatPoseEmbedding.NUM_EMBEDDING_PAIRS;
+  public static final int NUM_DIMS = FlatPoseEmbedding.NUM_DIMS;
+  // Length of a flat embedding, laid out as X1,Y1,Z1,X2,Y2,Z2...
+  public static final int FLAT_EMBEDDING_SIZE = FlatPoseEmbedding.SIZE;
+  // Length of the scratch array {@link #getFlatPoseEmbedding(LandmarkFrame, float[], float[])}
+  // normalizes landmarks in.
+  public static final int SCRATCH_SIZE = LandmarkFrame.NUM_LANDMARKS * NUM_DIMS;
 
   public static List<PointF3D> getPoseEmbedding(List<PointF3D> landmarks) {
-    List<PointF3D> normalizedLandmarks = normalize(landmarks);
-    return getEmbedding(normalizedLandmarks);
+    return unflatten(getFlatPoseEmbedding(landmarks), 0);
   }
 
-  private static List<PointF3D> normalize(List<PointF3D> landmarks) {
-    List<PointF3D> normalizedLandmarks = new ArrayList<>(landmarks);
-    // Normalize translation.
-    PointF3D center = average(
-        landmarks.get(PoseLandmark.LEFT_HIP), landmarks.get(PoseLandmark.RIGHT_HIP));
-    subtractAll(center, normalizedLandmarks);
-
-    // Normalize scale.
-    multiplyAll(normalizedLandmarks, 1 / getPoseSize(normalizedLandmarks));
-    // Multiplication by 100 is not required, but makes it easier to debug.
-    multiplyAll(normalizedLandmarks, 100);
-    return normalizedLandmarks;
+  /** Returns the embedding for given landmarks as a single contiguous array. */
+  public static float[] getFlatPoseEmbedding(List<PointF3D> landmarks) {
+    float[] lm = new float[landmarks.size() * NUM_DIMS];
+    flatten(landmarks, lm, 0);
+    float[] flatEmbedding = new float[FLAT_EMBEDDING_SIZE];
+    FlatPoseEmbedding.compute(lm, flatEmbedding);
+    return flatEmbedding;
   }
 
-  // Translation normalization should've been done prior to calling this method.
-  private static float getPoseSize(List<PointF3D> landmarks) {
-    // Note: This approach uses only 2D landmarks to compute pose size as using Z wasn't helpful
-    // in our experimentation but you're welcome to tweak.
-    PointF3D hipsCenter = average(
-        landmarks.get(PoseLandmark.LEFT_HIP), landmarks.get(PoseLandmark.RIGHT_HIP));
-
-    PointF3D shouldersCenter = average(
-        landmarks.get(PoseLandmark.LEFT_SHOULDER),
-        landmarks.get(PoseLandmark.RIGHT_SHOULDER));
-
-    float torsoSize = l2Norm2D(subtract(hipsCenter, shouldersCenter));
+  /**
+   * Writes the embedding for given landmarks to {@code flatEmbedding}, without allocating. The
+   * landmarks are normalized in {@code scratch}, which must hold {@link #SCRATCH_SIZE} floats, so
+   * the frame itself is left as it is.
+   */
+  public static void getFlatPoseEmbedding(
+      LandmarkFrame landmarks, float[] scratch, float[] flatEmbedding) {
+    landmarks.copyPositions(scratch);
+    FlatPoseEmbedding.compute(scratch, flatEmbedding);
+  }
 
-    float maxDistance = torsoSize * TORSO_MULTIPLIER;
-    // torsoSize * TORSO_MULTIPLIER is the floor we want based on experimentation but actual size
-    // can be bigger for a given pose depending on extension of limbs etc so we calculate that.
-    for (PointF3D landmark : landmarks) {
-      float distance = l2Norm2D(subtract(hipsCenter, landmark));
-      if (distance > maxDistance) {
-        maxDistance = distance;
-      }
+  /** Copies an embedding into {@code out} starting at {@code offset}. */
+  public static void flatten(List<PointF3D> embedding, float[] out, int offset) {
+    for (PointF3D point : embedding) {
+      out[offset++] = point.getX();
+      out[offset++] = point.getY();
+      out[offset++] = point.getZ();
     }
-    return maxDistance;
   }
 
-  private static List<PointF3D> getEmbedding(List<PointF3D> lm) {
-    List<PointF3D> embedding = new ArrayList<>();
-
-    // We use several pairwise 3D distances to form pose embedding. These were selected
-    // based on experimentation for best results with our default pose classes as captued in the
-    // pose samples csv. Feel free to play with this and add or remove for your use-cases.
-
-    // We group our distances by number of joints between the pairs.
-    // One joint.
-    embedding.add(subtract(
-        average(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.RIGHT_HIP)),
-        average(lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.RIGHT_SHOULDER))
-    ));
-
-    embedding.add(subtract(
-        lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.LEFT_ELBOW)));
-    embedding.add(subtract(
-        lm.get(PoseLandmark.RIGHT_SHOULDER), lm.get(PoseLandmark.RIGHT_ELBOW)));
-
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_ELBOW), lm.get(PoseLandmark.LEFT_WRIST)));
-    embedding.add(subtract(lm.get(PoseLandmark.RIGHT_ELBOW), lm.get(PoseLandmark.RIGHT_WRIST)));
-
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_KNEE)));
-    embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_KNEE)));
-
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_KNEE), lm.get(PoseLandmark.LEFT_ANKLE)));
-    embedding.add(subtract(lm.get(PoseLandmark.RIGHT_KNEE), lm.get(PoseLandmark.RIGHT_ANKLE)));
-
-    // Two joints.
-    embedding.add(subtract(
-        lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.LEFT_WRIST)));
-    embedding.add(subtract(
-        lm.get(PoseLandmark.RIGHT_SHOULDER), lm.get(PoseLandmark.RIGHT_WRIST)));
-
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_ANKLE)));
-    embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_ANKLE)));
-
-    // Four joints.
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_WRIST)));
-    embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_WRIST)));
-
-    // Five joints.
-    embedding.add(subtract(
-        lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.LEFT_ANKLE)));
-    embedding.add(subtract(
-        lm.get(PoseLandmark.RIGHT_SHOULDER), lm.get(PoseLandmark.RIGHT_ANKLE)));
-
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_WRIST)));
-    embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_WRIST)));
-
-    // Cross body.
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_ELBOW), lm.get(PoseLandmark.RIGHT_ELBOW)));
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_KNEE), lm.get(PoseLandmark.RIGHT_KNEE)));
-
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_WRIST), lm.get(PoseLandmark.RIGHT_WRIST)));
-    embedding.add(subtract(lm.get(PoseLandmark.LEFT_ANKLE), lm.get(PoseLandmark.RIGHT_ANKLE)));
-
+  /** Inverse of {@link #flatten}, reads one embedding starting at {@code offset}. */
+  public static List<PointF3D> unflatten(float[] flatEmbedding, int offset) {
+    List<PointF3D> embedding = new ArrayList<>(NUM_EMBEDDING_PAIRS);
+    for (int i = 0; i < NUM_EMBEDDING_PAIRS; i++) {
+      int j = offset + i * NUM_DIMS;
+      embedding.add(PointF3D.from(flatEmbedding[j], flatEmbedding[j + 1], flatEmbedding[j + 2]));
+    }
     return embedding;
   }
 
@@ -34,12 +34,23 @@ public class PoseSample {
 
   private final String name;
   private final String className;
-  private final List<PointF3D> embedding;
+  private final float[] flatEmbedding;
+  // Built on first use for samples created from a precomputed flat embedding.
+  private volatile List<PointF3D> embedding;
 
   public PoseSample(String name, String className, List<PointF3D> landmarks) {
     this.name = name;
     this.className = className;
     this.embedding = PoseEmbedding.getPoseEmbedding(landmarks);
+    this.flatEmbedding = new float[PoseEmbedding.FLAT_EMBEDDING_SIZE];
+    PoseEmbedding.flatten(embedding, flatEmbedding, 0);
+  }
+
+  /** Creates a sample from an embedding computed ahead of time, see {@link PoseSampleLoader}. */
+  public PoseSample(String name, String className, float[] flatEmbedding) {
+    this.name = name;
+    this.className = className;
+    this.flatEmbedding = flatEmbedding;
   }
 
   public String getName() {
@@ -51,9 +62,17 @@ public class PoseSample {
   }
 
   public List<PointF3D> getEmbedding() {
+    if (embedding == null) {
+      embedding = PoseEmbedding.unflatten(flatEmbedding, 0);
+    }
     return embedding;
   }
 
+  /** Same as {@link #getEmbedding()}, laid out as X1,Y1,Z1,X2,Y2,Z2... */
+  public float[] getFlatEmbedding() {
+    return flatEmbedding;
+  }
+
   public static PoseSample getPoseSample(String csvLine, String separator) {
     List<String> tokens = Splitter.onPattern(separator).splitToList(csvLine);
     // Format is expected to be Name,Class,X1,Y1,Z1,X2,Y2,Z2...
@@ -0,0 +1,123 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.FLAT_EMBEDDING_SIZE;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads pose samples from assets, either from a csv or from the binary file the build precomputes
+ * from it.
+ *
+ * <p>The binary file holds every sample's flat embedding and class id, so loading it is a memory
+ * map and one bulk copy into {@link PackedPoseSamples} instead of parsing and normalizing each
+ * sample. See PoseSampleEncoder in buildSrc for the layout.
+ */
+public class PoseSampleLoader {
+  private static final String TAG = "PoseSampleLoader";
+  // Must match PoseSampleEncoder in buildSrc.
+  private static final int MAGIC = 0x50545053;
+  private static final int FORMAT_VERSION = 1;
+
+  private PoseSampleLoader() {}
+
+  /**
+   * Returns the samples of a binary asset, or null if it is missing, stored compressed or was
+   * written by an incompatible build.
+   */
+  @Nullable
+  public static PackedPoseSamples loadBinary(AssetManager assets, String path) {
+    // openFd only works for assets stored uncompressed, see noCompress in the app's build file.
+    try (AssetFileDescriptor fileDescriptor = assets.openFd(path);
+        FileInputStream input = fileDescriptor.createInputStream();
+        FileChannel channel = input.getChannel()) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+          fileDescriptor.getStartOffset(), fileDescriptor.getLength());
+      return read(buffer);
+    } catch (IOException e) {
+      Log.d(TAG, "No usable binary pose samples at " + path + ".\n" + e);
+      return null;
+    }
+  }
+
+  @Nullable
+  static PackedPoseSamples read(ByteBuffer buffer) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      if (buffer.getInt() != MAGIC
+          || buffer.getInt() != FORMAT_VERSION
+          || buffer.getInt() != FLAT_EMBEDDING_SIZE) {
+        Log.e(TAG, "Binary pose samples are from an incompatible build.");
+        return null;
+      }
+      // Each name takes at least its 4-byte length.
+      int[] registryIds = new int[readCount(buffer, 4)];
+      for (int i = 0; i < registryIds.length; i++) {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        registryIds[i] = ClassRegistry.idOf(new String(bytes, StandardCharsets.UTF_8));
+        // Names are padded so the embeddings that follow stay 4-byte aligned.
+        buffer.position((buffer.position() + 3) & ~3);
+      }
+      // Each sample takes its 4-byte class id and its embedding.
+      int[] classIds = new int[readCount(buffer, 4 * (1 + FLAT_EMBEDDING_SIZE))];
+      for (int i = 0; i < classIds.length; i++) {
+        classIds[i] = registryIds[buffer.getInt()];
+      }
+      // The embeddings are already packed the way the classifier reads them.
+      float[] embeddings = new float[classIds.length * FLAT_EMBEDDING_SIZE];
+      buffer.asFloatBuffer().get(embeddings);
+      return new PackedPoseSamples(embeddings, classIds);
+    } catch (BufferUnderflowException | IllegalArgumentException
+        | ArrayIndexOutOfBoundsException e) {
+      Log.e(TAG, "Binary pose samples are truncated or corrupt.\n" + e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads a count of items that each take at least {@code itemBytes} of the rest of the buffer, so
+   * a corrupt count fails here rather than allocating a negative or huge array.
+   */
+  private static int readCount(ByteBuffer buffer, int itemBytes) {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / itemBytes) {
+      throw new IllegalArgumentException("Invalid count " + count);
+    }
+    return count;
+  }
+
+  /** Parses the samples of a csv asset, skipping invalid lines. */
+  public static List<PoseSample> loadCsv(AssetManager assets, String path) {
+    List<PoseSample> poseSamples = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(assets.open(path)))) {
+      String csvLine = reader.readLine();
+      while (csvLine != null) {
+        // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
+        PoseSample poseSample = PoseSample.getPoseSample(csvLine, ",");
+        if (poseSample != null) {
+          poseSamples.add(poseSample);
+        }
+        csvLine = reader.readLine();
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Error when loading pose samples.\n" + e);
+    }
+    return poseSamples;
+  }
+}
@@ -0,0 +1,75 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.NUM_EMBEDDING_PAIRS;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counters describing how much of the MAX distance stage of {@link PoseClassifier} was skipped by
+ * early exit for the last classified frame.
+ */
+public class PruningStats {
+  private int samplesEvaluated;
+  private int samplesPruned;
+  private long prunedPairs;
+  // Number of pruned samples by the count of embedding pairs evaluated before giving up.
+  private final int[] prunedAtDepth = new int[NUM_EMBEDDING_PAIRS];
+
+  void reset() {
+    samplesEvaluated = 0;
+    samplesPruned = 0;
+    prunedPairs = 0;
+    Arrays.fill(prunedAtDepth, 0);
+  }
+
+  void record(int depth) {
+    samplesEvaluated++;
+    if (depth < NUM_EMBEDDING_PAIRS) {
+      samplesPruned++;
+      prunedPairs += depth;
+      prunedAtDepth[depth]++;
+    }
+  }
+
+  /** Returns how many samples were passed to the {@link DistanceKernel}. */
+  public int getSamplesEvaluated() {
+    return samplesEvaluated;
+  }
+
+  /** Returns how many samples were abandoned before all embedding pairs were evaluated. */
+  public int getSamplesPruned() {
+    return samplesPruned;
+  }
+
+  /** Returns how many pruned samples were abandoned after evaluating exactly {@code depth} pairs. */
+  public int getSamplesPrunedAtDepth(int depth) {
+    return prunedAtDepth[depth];
+  }
+
+  /** Returns the mean number of embedding pairs evaluated for pruned samples. */
+  public float getAveragePruneDepth() {
+    return samplesPruned == 0 ? 0 : (float) prunedPairs / samplesPruned;
+  }
+
+  /** Returns the fraction of embedding pairs that did not need to be evaluated. */
+  public float getSkippedPairsRatio() {
+    if (samplesEvaluated == 0) {
+      return 0;
+    }
+    long skippedPairs = (long) samplesPruned * NUM_EMBEDDING_PAIRS - prunedPairs;
+    return (float) skippedPairs / ((long) samplesEvaluated * NUM_EMBEDDING_PAIRS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "pruned %d/%d samples, avg depth %.1f/%d, skipped %.0f%% of pairs",
+        samplesPruned,
+        samplesEvaluated,
+        getAveragePruneDepth(),
+        NUM_EMBEDDING_PAIRS,
+        getSkippedPairsRatio() * 100);
+  }
+}
@@ -26,6 +26,7 @@ public class RepetitionCounter {
   private static final float DEFAULT_EXIT_THRESHOLD = 4f;
 
   private final String className;
+  private final int classId;
   private final float enterThreshold;
   private final float exitThreshold;
 
@@ -38,6 +39,7 @@ public class RepetitionCounter {
 
   public RepetitionCounter(String className, float enterThreshold, float exitThreshold) {
     this.className = className;
+    this.classId = ClassRegistry.idOf(className);
     this.enterThreshold = enterThreshold;
     this.exitThreshold = exitThreshold;
     numRepeats = 0;
@@ -51,7 +53,7 @@ public class RepetitionCounter {
    * @return number of reps.
    */
   public int addClassificationResult(ClassificationResult classificationResult) {
-    float poseConfidence = classificationResult.getClassConfidence(className);
+    float poseConfidence = classificationResult.getConfidence(classId);
 
     if (!poseEntered) {
       poseEntered = poseConfidence > enterThreshold;
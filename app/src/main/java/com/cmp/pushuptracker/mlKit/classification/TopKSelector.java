@@ -0,0 +1,110 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+/**
+ * Keeps the K entries with the smallest distances offered since the last {@link #clear()}.
+ *
+ * <p>Backed by a binary max-heap over parallel {@code int} index and {@code float} distance arrays,
+ * so offering a candidate never boxes or allocates and one instance can be reused for every frame.
+ * Once the heap is full, a candidate that is not closer than the current K-th best is rejected with
+ * a single comparison against {@link #threshold()}.
+ */
+public class TopKSelector {
+  private final int capacity;
+  private final int[] indices;
+  private final float[] distances;
+  private int size;
+
+  public TopKSelector(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    this.capacity = capacity;
+    this.indices = new int[capacity];
+    this.distances = new float[capacity];
+  }
+
+  /** Removes all entries, keeping the allocated storage. */
+  public void clear() {
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Returns the distance a candidate has to beat to be retained: the largest retained distance once
+   * full, or {@link Float#POSITIVE_INFINITY} while there is still room.
+   */
+  public float threshold() {
+    return size == capacity ? distances[0] : Float.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Offers a candidate, evicting the current farthest entry if full.
+   *
+   * @return whether the candidate was retained
+   */
+  public boolean offer(int index, float distance) {
+    if (size < capacity) {
+      siftUp(size++, index, distance);
+      return true;
+    }
+    if (Float.compare(distance, distances[0]) >= 0) {
+      return false;
+    }
+    siftDown(0, index, distance);
+    return true;
+  }
+
+  /** Returns the index of the i-th retained entry, in no particular order. */
+  public int getIndex(int i) {
+    return indices[i];
+  }
+
+  /** Returns the distance of the i-th retained entry, in the same order as {@link #getIndex}. */
+  public float getDistance(int i) {
+    return distances[i];
+  }
+
+  private void siftUp(int position, int index, float distance) {
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      if (Float.compare(distances[parent], distance) >= 0) {
+        break;
+      }
+      indices[position] = indices[parent];
+      distances[position] = distances[parent];
+      position = parent;
+    }
+    indices[position] = index;
+    distances[position] = distance;
+  }
+
+  private void siftDown(int position, int index, float distance) {
+    int half = size >>> 1;
+    while (position < half) {
+      int child = 2 * position + 1;
+      int right = child + 1;
+      if (right < size && Float.compare(distances[right], distances[child]) > 0) {
+        child = right;
+      }
+      if (Float.compare(distance, distances[child]) >= 0) {
+        break;
+      }
+      indices[position] = indices[child];
+      distances[position] = distances[child];
+      position = child;
+    }
+    indices[position] = index;
+    distances[position] = distance;
+  }
+}
@@ -0,0 +1,159 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.FLIPPED_MAX;
+import static com.cmp.pushuptracker.mlKit.classification.DistanceKernel.ORIGINAL_MAX;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.FLAT_EMBEDDING_SIZE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Random;
+
+/**
+ * Vantage-point tree over packed sample embeddings, under the max distance of a {@link
+ * DistanceKernel}.
+ *
+ * <p>Lets the MAX stage of {@link PoseClassifier} skip whole groups of samples that the triangle
+ * inequality proves can't beat the current top K. Every node picks a vantage sample and splits the
+ * rest at the median distance to it. Queries are searched together with their mirror, so a subtree
+ * is only skipped when neither could reach it.
+ */
+class VantagePointTree {
+  // Nodes this small are scanned linearly, since bounds stop paying off.
+  private static final int LEAF_SIZE = 8;
+  // Slack for float rounding, so bounds never skip a sample the linear scan would retain.
+  private static final float BOUND_EPSILON = 1e-3f;
+  // Fixed so the same samples always produce the same tree.
+  private static final long SEED = 42;
+
+  /** Callback through which {@link #search} measures samples against the query. */
+  interface Visitor {
+    /** Returns the distance a sample has to beat to be retained, see {@link TopKSelector}. */
+    float threshold();
+
+    /**
+     * Measures a sample against the query and offers it to the top K, abandoning it once it can't
+     * beat {@code maxThreshold}.
+     *
+     * @return whether the sample was fully measured, in which case {@code out} holds the kernel
+     *     output for it
+     */
+    boolean visit(int sampleIndex, float maxThreshold, float[] out);
+  }
+
+  // Sample indices in tree order. The node covering [lo, hi) keeps its vantage sample at lo, the
+  // samples closer than its radius in [lo + 1, split[lo]) and the rest in [split[lo], hi).
+  private final int[] order;
+  private final int[] split;
+  private final float[] radius;
+
+  VantagePointTree(float[] sampleEmbeddings, DistanceKernel distanceKernel) {
+    int numSamples = sampleEmbeddings.length / FLAT_EMBEDDING_SIZE;
+    order = new int[numSamples];
+    split = new int[numSamples];
+    radius = new float[numSamples];
+    for (int i = 0; i < numSamples; i++) {
+      order[i] = i;
+    }
+    build(0, numSamples, sampleEmbeddings, distanceKernel, new float[numSamples], new Random(SEED));
+  }
+
+  private void build(int lo, int hi, float[] samples, DistanceKernel distanceKernel,
+      float[] distances, Random random) {
+    while (hi - lo > LEAF_SIZE) {
+      swap(order, distances, lo, lo + random.nextInt(hi - lo));
+      int vantageOffset = order[lo] * FLAT_EMBEDDING_SIZE;
+      for (int i = lo + 1; i < hi; i++) {
+        distances[i] =
+            distanceKernel.maxDistance(samples, vantageOffset, order[i] * FLAT_EMBEDDING_SIZE);
+      }
+      int mid = lo + 1 + (hi - lo - 1) / 2;
+      select(order, distances, lo + 1, hi, mid);
+      split[lo] = mid;
+      radius[lo] = distances[mid];
+      build(lo + 1, mid, samples, distanceKernel, distances, random);
+      lo = mid;
+    }
+  }
+
+  /**
+   * Visits every sample that could beat the visitor's threshold, measuring {@code out} with the
+   * same kernel the tree was built with.
+   */
+  void search(Visitor visitor, float[] out) {
+    search(0, order.length, visitor, out);
+  }
+
+  private void search(int lo, int hi, Visitor visitor, float[] out) {
+    if (hi - lo <= LEAF_SIZE) {
+      for (int i = lo; i < hi; i++) {
+        visitor.visit(order[i], visitor.threshold(), out);
+      }
+      return;
+    }
+
+    // Bounds need the exact distances to the vantage sample, so it is never abandoned early.
+    visitor.visit(order[lo], Float.POSITIVE_INFINITY, out);
+    float nearest = min(out[ORIGINAL_MAX], out[FLIPPED_MAX]);
+    float farthest = max(out[ORIGINAL_MAX], out[FLIPPED_MAX]);
+    float mu = radius[lo];
+    int mid = split[lo];
+    // By the triangle inequality, no sample inside the radius is closer to the query (or its
+    // mirror) than nearest - mu, and none outside is closer than mu - farthest.
+    float insideBound = nearest - mu;
+    float outsideBound = mu - farthest;
+    if (nearest < mu) {
+      searchIfReachable(lo + 1, mid, insideBound, visitor, out);
+      searchIfReachable(mid, hi, outsideBound, visitor, out);
+    } else {
+      searchIfReachable(mid, hi, outsideBound, visitor, out);
+      searchIfReachable(lo + 1, mid, insideBound, visitor, out);
+    }
+  }
+
+  private void searchIfReachable(int lo, int hi, float bound, Visitor visitor, float[] out) {
+    if (lo < hi && bound - BOUND_EPSILON < visitor.threshold()) {
+      search(lo, hi, visitor, out);
+    }
+  }
+
+  /**
+   * Reorders [lo, hi) so that position k holds the value it would have if sorted by distance, with
+   * no greater distance before it and no smaller one after it.
+   */
+  private static void select(int[] order, float[] distances, int lo, int hi, int k) {
+    int left = lo;
+    int right = hi - 1;
+    while (left < right) {
+      float pivot = distances[(left + right) >>> 1];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (distances[i] < pivot) {
+          i++;
+        }
+        while (distances[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(order, distances, i++, j--);
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private static void swap(int[] order, float[] distances, int i, int j) {
+    int index = order[i];
+    order[i] = order[j];
+    order[j] = index;
+    float distance = distances[i];
+    distances[i] = distances[j];
+    distances[j] = distance;
+  }
+}
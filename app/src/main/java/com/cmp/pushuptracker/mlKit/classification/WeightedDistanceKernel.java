@@ -0,0 +1,78 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.FLAT_EMBEDDING_SIZE;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.NUM_DIMS;
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.NUM_EMBEDDING_PAIRS;
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+
+import com.google.mlkit.vision.common.PointF3D;
+
+/**
+ * Default {@link DistanceKernel}: per-axis absolute differences scaled by a weight for each axis.
+ *
+ * <p>Mirroring a pose along X only negates the X component of its embedding, so the mirrored query
+ * is never materialized: its X difference is {@code sample + query} and its Y and Z differences are
+ * shared with the original query.
+ */
+public class WeightedDistanceKernel implements DistanceKernel {
+  // A weighted Chebyshev distance is a metric as long as no weight is negative, which makes this
+  // kernel usable with {@link VantagePointTree}.
+  private final float weightX;
+  private final float weightY;
+  private final float weightZ;
+
+  public WeightedDistanceKernel(PointF3D axesWeights) {
+    this.weightX = axesWeights.getX();
+    this.weightY = axesWeights.getY();
+    this.weightZ = axesWeights.getZ();
+  }
+
+  @Override
+  public int compute(
+      float[] query, float[] samples, int sampleOffset, float maxThreshold, float[] out) {
+    float originalMax = 0;
+    float flippedMax = 0;
+    float originalSum = 0;
+    float flippedSum = 0;
+    for (int i = 0; i < FLAT_EMBEDDING_SIZE; i += NUM_DIMS) {
+      int j = sampleOffset + i;
+      float x = abs((samples[j] - query[i]) * weightX);
+      float flippedX = abs((samples[j] + query[i]) * weightX);
+      float y = abs((samples[j + 1] - query[i + 1]) * weightY);
+      float z = abs((samples[j + 2] - query[i + 2]) * weightZ);
+
+      float yz = max(y, z);
+      originalMax = max(originalMax, max(x, yz));
+      flippedMax = max(flippedMax, max(flippedX, yz));
+      originalSum += x + y + z;
+      flippedSum += flippedX + y + z;
+
+      if (originalMax > maxThreshold
+          && flippedMax > maxThreshold
+          && i + NUM_DIMS < FLAT_EMBEDDING_SIZE) {
+        out[ORIGINAL_MAX] = originalMax;
+        out[FLIPPED_MAX] = flippedMax;
+        return i / NUM_DIMS + 1;
+      }
+    }
+    out[ORIGINAL_MAX] = originalMax;
+    out[FLIPPED_MAX] = flippedMax;
+    out[ORIGINAL_SUM] = originalSum;
+    out[FLIPPED_SUM] = flippedSum;
+    return NUM_EMBEDDING_PAIRS;
+  }
+
+  @Override
+  public float maxDistance(float[] samples, int firstOffset, int secondOffset) {
+    float result = 0;
+    for (int i = 0; i < FLAT_EMBEDDING_SIZE; i += NUM_DIMS) {
+      int j = firstOffset + i;
+      int k = secondOffset + i;
+      result = max(result, abs((samples[k] - samples[j]) * weightX));
+      result = max(result, abs((samples[k + 1] - samples[j + 1]) * weightY));
+      result = max(result, abs((samples[k + 2] - samples[j + 2]) * weightZ));
+    }
+    return result;
+  }
+}
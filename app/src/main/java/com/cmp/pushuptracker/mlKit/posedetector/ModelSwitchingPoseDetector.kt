@@ -0,0 +1,45 @@
+package com.cmp.pushuptracker.mlKit.posedetector
+
+import com.cmp.pushuptracker.mlKit.prefUtils.PreferenceUtils
+import com.cmp.pushuptracker.mlKit.utils.FrameRateGovernor
+import com.google.mlkit.vision.pose.PoseDetection
+import com.google.mlkit.vision.pose.PoseDetector
+import com.google.mlkit.vision.pose.PoseDetectorOptionsBase
+import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions
+
+/**
+ * Holds an ML Kit pose detector for the model [frameRateGovernor] picks, starting from [options],
+ * or from [initialDetector], e.g. one already warmed up, which must have been created with them.
+ * The accurate model is only allowed if [options] asks for it. Models swapped in run in the same
+ * detector mode as [options], stream or single image, which [streamMode] tells. Not thread safe;
+ * callers keep only one frame in the detector at a time, so the old one is idle when it is closed.
+ */
+class ModelSwitchingPoseDetector(
+  options: PoseDetectorOptionsBase,
+  private val frameRateGovernor: FrameRateGovernor,
+  private val streamMode: Boolean,
+  initialDetector: PoseDetector? = null
+) {
+  private var detector = initialDetector ?: PoseDetection.getClient(options)
+  private var detectorIsAccurate = options is AccuratePoseDetectorOptions
+
+  init {
+    frameRateGovernor.setAccurateModelAllowed(detectorIsAccurate)
+  }
+
+  /** Returns the detector for the model the governor picks now, switching models if needed. */
+  fun current(): PoseDetector {
+    val accurate = frameRateGovernor.isAccurateModelEnabled()
+    if (accurate != detectorIsAccurate) {
+      detector.close()
+      detector =
+        PoseDetection.getClient(PreferenceUtils.getPoseDetectorOptions(accurate, streamMode))
+      detectorIsAccurate = accurate
+    }
+    return detector
+  }
+
+  fun close() {
+    detector.close()
+  }
+}
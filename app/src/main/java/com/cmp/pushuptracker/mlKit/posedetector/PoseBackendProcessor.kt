@@ -0,0 +1,82 @@
+package com.cmp.pushuptracker.mlKit.posedetector
+
+import androidx.camera.core.ImageProxy
+import com.cmp.pushuptracker.mlKit.classification.PoseClassifierCache
+import com.cmp.pushuptracker.mlKit.classification.PoseClassifierProcessor
+import com.cmp.pushuptracker.mlKit.utils.CameraFrameProcessor
+import com.cmp.pushuptracker.mlKit.utils.GraphicOverlay
+import com.cmp.pushuptracker.pose.AngleRepCounter
+import com.cmp.pushuptracker.pose.LandmarkFrame
+import com.cmp.pushuptracker.pose.PoseBackend
+
+/**
+ * Runs live preview frames through a [PoseBackend], then classifies, counts and draws the poses it
+ * finds the way [PoseDetectorProcessor] does for its own detector.
+ *
+ * The backend gates, paces and drops frames itself. Landmarks are handled on whatever thread the
+ * backend delivers them on, one frame at a time. Frames only reach this processor after [start],
+ * so a backend shared with the processor being replaced isn't taken over before that one stops.
+ */
+class PoseBackendProcessor(
+  private val backend: PoseBackend,
+  private val showInFrameLikelihood: Boolean,
+  private val visualizeZ: Boolean,
+  private val rescaleZForVisualization: Boolean,
+  private val runClassification: Boolean,
+  private val poseClassifierCache: PoseClassifierCache
+) : CameraFrameProcessor {
+
+  // Only touched on the thread landmarks are delivered on, like repCounter.
+  private var poseClassifierProcessor: PoseClassifierProcessor? =
+    poseClassifierCache.getIfLoaded()?.let { PoseClassifierProcessor(it, /* isStreamMode= */ true) }
+  private val repCounter = AngleRepCounter()
+  private val repBeeper = RepBeeper()
+  @Volatile
+  private var graphicOverlay: GraphicOverlay? = null
+
+  /** Starts taking landmarks from the backend. Call once the previous processor is stopped. */
+  fun start() {
+    backend.setListener(::onLandmarks)
+  }
+
+  override fun processImageProxy(image: ImageProxy, graphicOverlay: GraphicOverlay) {
+    this.graphicOverlay = graphicOverlay
+    backend.analyze(image)
+  }
+
+  override fun stop() {
+    backend.setListener(null)
+    backend.close()
+    repBeeper.release()
+  }
+
+  private fun onLandmarks(frame: LandmarkFrame) {
+    val overlay = graphicOverlay ?: return
+    var classificationResult = emptyList<String>()
+    if (runClassification) {
+      if (poseClassifierProcessor == null) {
+        poseClassifierProcessor =
+          PoseClassifierProcessor(poseClassifierCache.get(), /* isStreamMode= */ true)
+      }
+      poseClassifierProcessor!!.setFrameIntervalMs(backend.frameIntervalMs)
+      classificationResult = poseClassifierProcessor!!.getPoseResult(frame)
+    }
+    val repCount = repCounter.addFrame(frame)
+    repBeeper.onRepCount(repCount)
+    // The overlay keeps the frame until its graphic is cleared.
+    val graphic =
+      PoseGraphic(
+        overlay,
+        frame.retain(),
+        showInFrameLikelihood,
+        visualizeZ,
+        rescaleZForVisualization,
+        classificationResult,
+        repCount
+      )
+    overlay.update {
+      overlay.clear()
+      overlay.add(graphic)
+    }
+  }
+}
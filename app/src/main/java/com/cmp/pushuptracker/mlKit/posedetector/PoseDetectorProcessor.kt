@@ -1,21 +1,37 @@
 package com.cmp.pushuptracker.mlKit.posedetector
 
 import android.content.Context
+import android.graphics.PointF
+import android.graphics.Rect
 import android.util.Log
+import com.cmp.pushuptracker.mlKit.classification.PoseClassifierCache
 import com.cmp.pushuptracker.mlKit.classification.PoseClassifierProcessor
+import com.cmp.pushuptracker.mlKit.prefUtils.PreferenceUtils
+import com.cmp.pushuptracker.mlKit.utils.FrameMetadata
 import com.cmp.pushuptracker.mlKit.utils.GraphicOverlay
+import com.cmp.pushuptracker.pose.AngleRepCounter
+import com.cmp.pushuptracker.pose.LandmarkFrame
+import com.cmp.pushuptracker.pose.LandmarkFramePool
+import com.cmp.pushuptracker.pose.MlKitPoseBackend
 import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
 import com.google.android.odml.image.MlImage
 import com.google.mlkit.vision.common.InputImage
 import com.google.mlkit.vision.pose.Pose
-import com.google.mlkit.vision.pose.PoseDetection
 import com.google.mlkit.vision.pose.PoseDetector
 import com.google.mlkit.vision.pose.PoseDetectorOptionsBase
 import java.util.ArrayList
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 
-/** A processor to run pose detector. */
+/**
+ * A processor to run pose detector.
+ *
+ * Classification runs in [postProcess] on its own thread and uses the process-wide classifier from
+ * [poseClassifierCache]. When it is already loaded, e.g. by [PoseWarmUpService], the first
+ * classified frame doesn't wait on it. Likewise [warmDetector], if given, is a detector already
+ * created with [options], which the processor takes over instead of creating its own.
+ */
 class PoseDetectorProcessor(
   private val context: Context,
   options: PoseDetectorOptionsBase,
@@ -23,63 +39,113 @@ class PoseDetectorProcessor(
   private val visualizeZ: Boolean,
   private val rescaleZForVisualization: Boolean,
   private val runClassification: Boolean,
-  private val isStreamMode: Boolean
+  private val isStreamMode: Boolean,
+  private val poseClassifierCache: PoseClassifierCache,
+  warmDetector: PoseDetector? = null
 ) : VisionProcessorBase<PoseDetectorProcessor.PoseWithClassification>(context) {
 
-  private val detector: PoseDetector
+  // Limits live detection to the area around the last pose, if enabled. Crops jump in size and
+  // position and alternate with whole frames, so the detector then runs in single image mode; live
+  // preview options match, see PreferenceUtils.isPoseRegionOfInterestUsed.
+  private val regionTracker =
+    if (isStreamMode && PreferenceUtils.isPoseRegionOfInterestEnabled(context)) PoseRegionTracker()
+    else null
+
+  private val detector =
+    ModelSwitchingPoseDetector(
+      options,
+      frameRateGovernor,
+      /* streamMode= */ isStreamMode && regionTracker == null,
+      warmDetector
+    )
   private val classificationExecutor: Executor
 
-  private var poseClassifierProcessor: PoseClassifierProcessor? = null
+  private var poseClassifierProcessor: PoseClassifierProcessor? =
+    poseClassifierCache.getIfLoaded()?.let { PoseClassifierProcessor(it, isStreamMode) }
+
+  // Frames in flight through the pipeline plus the one on the overlay.
+  private val landmarkFramePool = LandmarkFramePool(4)
+
+  // Counts push-ups across live frames. Only touched on the classification thread.
+  private val repCounter = if (isStreamMode) AngleRepCounter() else null
+  private val repBeeper = RepBeeper()
 
-  /** Internal class to hold Pose and classification results. */
-  class PoseWithClassification(val pose: Pose, val classificationResult: List<String>)
+  /**
+   * Internal class to hold the landmarks and classification results of a frame. Landmark positions
+   * are in whole frame coordinates, also when detection ran on part of the frame. Holds a reference
+   * to [landmarks], which [onSuccess] hands on to the overlay, or [onDropped] releases if the frame
+   * never gets there. [repCount] is null for single images, which have no reps.
+   */
+  class PoseWithClassification(
+    val landmarks: LandmarkFrame,
+    val classificationResult: List<String>,
+    val repCount: Int? = null
+  )
 
   init {
-    detector = PoseDetection.getClient(options)
     classificationExecutor = Executors.newSingleThreadExecutor()
   }
 
   override fun stop() {
     super.stop()
     detector.close()
+    repBeeper.release()
   }
 
   override fun detectInImage(image: InputImage): Task<PoseWithClassification> {
-    return detector
+    return detector.current()
       .process(image)
       .continueWith(
-        classificationExecutor,
-        { task ->
-          val pose = task.getResult()
-          var classificationResult: List<String> = ArrayList()
-          if (runClassification) {
-            if (poseClassifierProcessor == null) {
-              poseClassifierProcessor = PoseClassifierProcessor(context, isStreamMode)
-            }
-            classificationResult = poseClassifierProcessor!!.getPoseResult(pose)
-          }
-          PoseWithClassification(pose, classificationResult)
-        }
+        VisionProcessorBase.DIRECT_EXECUTOR,
+        { task -> toPoseWithClassification(task.getResult()) }
       )
   }
 
   override fun detectInImage(image: MlImage): Task<PoseWithClassification> {
-    return detector
+    return detector.current()
       .process(image)
       .continueWith(
-        classificationExecutor,
-        { task ->
-          val pose = task.getResult()
-          var classificationResult: List<String> = ArrayList()
-          if (runClassification) {
-            if (poseClassifierProcessor == null) {
-              poseClassifierProcessor = PoseClassifierProcessor(context, isStreamMode)
-            }
-            classificationResult = poseClassifierProcessor!!.getPoseResult(pose)
+        VisionProcessorBase.DIRECT_EXECUTOR,
+        { task -> toPoseWithClassification(task.getResult()) }
+      )
+  }
+
+  override fun selectRegionOfInterest(frameMetadata: FrameMetadata): Rect? =
+    regionTracker?.nextCrop(frameMetadata.width, frameMetadata.height, frameMetadata.rotation)
+
+  private fun toPoseWithClassification(pose: Pose): PoseWithClassification {
+    val landmarkOffset = regionTracker?.onPose(pose) ?: PointF(0f, 0f)
+    val landmarks = landmarkFramePool.acquire()
+    MlKitPoseBackend.fillLandmarkFrame(pose, landmarks, landmarkOffset.x, landmarkOffset.y)
+    // Detection doesn't know the capture time, postProcess stamps the frame with it.
+    return PoseWithClassification(landmarks, ArrayList())
+  }
+
+  override fun postProcess(
+    results: PoseWithClassification,
+    captureTimeMs: Long
+  ): Task<PoseWithClassification> {
+    results.landmarks.timestampMs = captureTimeMs
+    if (!runClassification && repCounter == null) {
+      return Tasks.forResult(results)
+    }
+    return Tasks.call(
+      classificationExecutor,
+      {
+        var classificationResult = results.classificationResult
+        if (runClassification) {
+          if (poseClassifierProcessor == null) {
+            poseClassifierProcessor =
+              PoseClassifierProcessor(poseClassifierCache.get(), isStreamMode)
           }
-          PoseWithClassification(pose, classificationResult)
+          poseClassifierProcessor!!.setFrameIntervalMs(frameRateGovernor.frameIntervalMs)
+          classificationResult = poseClassifierProcessor!!.getPoseResult(results.landmarks)
         }
-      )
+        val repCount = repCounter?.addFrame(results.landmarks)
+        repCount?.let { repBeeper.onRepCount(it) }
+        PoseWithClassification(results.landmarks, classificationResult, repCount)
+      }
+    )
   }
 
   override fun onSuccess(
@@ -89,15 +155,21 @@ class PoseDetectorProcessor(
     graphicOverlay.add(
         PoseGraphic(
             graphicOverlay,
-            poseWithClassification.pose,
+            poseWithClassification.landmarks,
             showInFrameLikelihood,
             visualizeZ,
             rescaleZForVisualization,
-            poseWithClassification.classificationResult
+            poseWithClassification.classificationResult,
+            poseWithClassification.repCount
         )
     )
   }
 
+  override fun onDropped(poseWithClassification: PoseWithClassification) {
+    // Goes back to the pool instead of to a graphic.
+    poseWithClassification.landmarks.release()
+  }
+
   override fun onFailure(e: Exception) {
     Log.e(TAG, "Pose detection failed!", e)
   }
@@ -6,22 +6,27 @@ import android.graphics.Paint
 import android.util.Log
 import com.cmp.pushuptracker.mlKit.utils.GraphicOverlay
 import com.cmp.pushuptracker.mlKit.utils.GraphicOverlay.Graphic
-import com.google.mlkit.vision.pose.Pose
+import com.cmp.pushuptracker.pose.LandmarkFrame
 import com.google.mlkit.vision.pose.PoseLandmark
 import java.lang.Float
 import kotlin.Boolean
 import kotlin.String
 import kotlin.toString
 
-/** Draw the detected pose in preview. */
+/**
+ * Draw the detected pose in preview. Takes over the caller's reference to the landmarks and
+ * releases it once removed from the overlay.
+ */
 class PoseGraphic
 internal constructor(
     overlay: GraphicOverlay,
-    private val pose: Pose,
+    private val landmarks: LandmarkFrame,
     private val showInFrameLikelihood: Boolean,
     private val visualizeZ: Boolean,
     private val rescaleZForVisualization: Boolean,
-    private val poseClassification: List<String>
+    private val poseClassification: List<String>,
+    // Push-ups counted so far, or null if not counting.
+    private val repCount: Int?
 ) : Graphic(overlay) {
     private var zMin = Float.MAX_VALUE
     private var zMax = Float.MIN_VALUE
@@ -48,42 +53,16 @@ internal constructor(
         rightPaint.color = Color.YELLOW
     }
 
-    private var inDownPhase = false
-    private var repCount = 0
-    private val hysteresis = 10.0
-
-    private fun updateRepCount(shoulderY: kotlin.Float, elbowY: kotlin.Float) {
-        val down = shoulderY > elbowY
-
-        if (inDownPhase && shoulderY < elbowY - hysteresis) {
-            Log.d("repCountLog", "Inside down phase - if && down $down")
-        }
-        if (!inDownPhase && down) {
-            Log.d("repCountLog", "Inside down phase")
-            inDownPhase = true
-        } else if (inDownPhase && shoulderY < elbowY - hysteresis) {
-            inDownPhase = false
-            repCount++
-            Log.d("repCountLog", repCount.toString())
-
-        }
+    override fun release() {
+        landmarks.release()
     }
 
-
-//  private fun updateRepCount(shoulderY: Double, elbowY: Double) {
-//    when {
-//      !inDownPhase && shoulderY > elbowY + hysteresis -> inDownPhase = true
-//      inDownPhase && shoulderY < elbowY - hysteresis -> {
-//        inDownPhase = false
-//        repCount++
-//        Log.d("repCountLog", repCount.toString())
-//      }
-//    }
-//  }
-
     override fun draw(canvas: Canvas) {
-        val landmarks = pose.allPoseLandmarks
-        if (landmarks.isEmpty()) {
+        // The count stays up while the user is out of view.
+        if (repCount != null) {
+            canvas.drawText("Reps: $repCount", 100f, 360f, classificationTextPaint)
+        }
+        if (!landmarks.hasPose()) {
             return
         }
 
@@ -110,73 +89,57 @@ internal constructor(
 //      }
 //    }
 
-        val leftShoulder = pose.getPoseLandmark(PoseLandmark.LEFT_SHOULDER)
-        val rightShoulder = pose.getPoseLandmark(PoseLandmark.RIGHT_SHOULDER)
-        val leftElbow = pose.getPoseLandmark(PoseLandmark.LEFT_ELBOW)
-        val rightElbow = pose.getPoseLandmark(PoseLandmark.RIGHT_ELBOW)
-        val leftHip = pose.getPoseLandmark(PoseLandmark.LEFT_HIP)
-        val rightHip = pose.getPoseLandmark(PoseLandmark.RIGHT_HIP)
-
-        drawLine(canvas, leftShoulder, rightShoulder, whitePaint)
-        drawLine(canvas, leftHip, rightHip, whitePaint)
-        drawLine(canvas, leftElbow, rightElbow, whitePaint)
+        drawLine(canvas, PoseLandmark.LEFT_SHOULDER, PoseLandmark.RIGHT_SHOULDER, whitePaint)
+        drawLine(canvas, PoseLandmark.LEFT_HIP, PoseLandmark.RIGHT_HIP, whitePaint)
+        drawLine(canvas, PoseLandmark.LEFT_ELBOW, PoseLandmark.RIGHT_ELBOW, whitePaint)
 
         Log.d(
-            "postLandmarkLog", "leftShoulderPos: ${leftShoulder?.position?.x.toString()} " +
-                    "leftShoulderPos: ${leftShoulder?.position?.y.toString()}"
+            "postLandmarkLog",
+            "leftShoulderPos: ${landmarks.getX(PoseLandmark.LEFT_SHOULDER)} " +
+                    "leftShoulderPos: ${landmarks.getY(PoseLandmark.LEFT_SHOULDER)}"
         )
 
         Log.d(
-            "postLandmarkLog", "rightShoulderPos: ${rightShoulder?.position?.x.toString()} " +
-                    "rightShoulderPos: ${rightShoulder?.position?.y.toString()}"
+            "postLandmarkLog",
+            "rightShoulderPos: ${landmarks.getX(PoseLandmark.RIGHT_SHOULDER)} " +
+                    "rightShoulderPos: ${landmarks.getY(PoseLandmark.RIGHT_SHOULDER)}"
         )
 
 
 
         Log.d(
-            "postLandmarkLog", "leftHipPos: ${leftHip?.position?.x.toString()} " +
-                    "leftHipPos: ${leftHip?.position?.y.toString()}"
+            "postLandmarkLog", "leftHipPos: ${landmarks.getX(PoseLandmark.LEFT_HIP)} " +
+                    "leftHipPos: ${landmarks.getY(PoseLandmark.LEFT_HIP)}"
         )
 
         Log.d(
-            "postLandmarkLog", "rightHipPos: ${rightHip?.position?.x.toString()} " +
-                    "rightHipPos: ${rightHip?.position?.y.toString()}"
+            "postLandmarkLog", "rightHipPos: ${landmarks.getX(PoseLandmark.RIGHT_HIP)} " +
+                    "rightHipPos: ${landmarks.getY(PoseLandmark.RIGHT_HIP)}"
         )
-
-        val ls = pose.getPoseLandmark(PoseLandmark.LEFT_SHOULDER)!!
-        val le = pose.getPoseLandmark(PoseLandmark.LEFT_ELBOW)!!
-        // (you can average left/right for robustness)
-        updateRepCount(ls.position.y, le.position.y)
-
-        // draw your rep count somewhere
-        canvas.drawText("Reps: $repCount", 100f, 360f, classificationTextPaint)
     }
 
-    internal fun drawPoint(canvas: Canvas, landmark: PoseLandmark, paint: Paint) {
-        val point = landmark.position3D
+    /** Draws the [landmark], one of the [PoseLandmark] constants. */
+    internal fun drawPoint(canvas: Canvas, landmark: Int, paint: Paint) {
         updatePaintColorByZValue(
             paint,
             canvas,
             visualizeZ,
             rescaleZForVisualization,
-            point.z,
+            landmarks.getZ(landmark),
             zMin,
             zMax
         )
-        canvas.drawCircle(translateX(point.x), translateY(point.y), DOT_RADIUS, paint)
+        canvas.drawCircle(
+            translateX(landmarks.getX(landmark)),
+            translateY(landmarks.getY(landmark)),
+            DOT_RADIUS,
+            paint
+        )
     }
 
-    internal fun drawLine(
-        canvas: Canvas,
-        startLandmark: PoseLandmark?,
-        endLandmark: PoseLandmark?,
-        paint: Paint
-    ) {
-        val start = startLandmark!!.position3D
-        val end = endLandmark!!.position3D
-
+    internal fun drawLine(canvas: Canvas, startLandmark: Int, endLandmark: Int, paint: Paint) {
         // Gets average z for the current body line
-        val avgZInImagePixel = (start.z + end.z) / 2
+        val avgZInImagePixel = (landmarks.getZ(startLandmark) + landmarks.getZ(endLandmark)) / 2
         updatePaintColorByZValue(
             paint,
             canvas,
@@ -188,10 +151,10 @@ internal constructor(
         )
 
         canvas.drawLine(
-            translateX(start.x),
-            translateY(start.y),
-            translateX(end.x),
-            translateY(end.y),
+            translateX(landmarks.getX(startLandmark)),
+            translateY(landmarks.getY(startLandmark)),
+            translateX(landmarks.getX(endLandmark)),
+            translateY(landmarks.getY(endLandmark)),
             paint
         )
     }
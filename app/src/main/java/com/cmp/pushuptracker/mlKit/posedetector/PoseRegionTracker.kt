@@ -0,0 +1,147 @@
+package com.cmp.pushuptracker.mlKit.posedetector
+
+import android.graphics.PointF
+import android.graphics.Rect
+import android.graphics.RectF
+import com.google.mlkit.vision.pose.Pose
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Tracks where the user is in the frame, so detection can be limited to an expanded box around
+ * the last pose instead of the whole frame.
+ *
+ * Boxes are kept in upright image coordinates, which is what landmark positions use, and turned
+ * into crops of the unrotated camera frame for each new frame. Detection falls back to the whole
+ * frame when there is no pose to go by, and every [FULL_FRAME_INTERVAL] frames, so a user who
+ * moves out of the box faster than it follows is picked up again.
+ *
+ * Not thread safe. Expects one frame at a time: [nextCrop], then [onPose] with its result.
+ */
+internal class PoseRegionTracker {
+  private var frameWidth = 0
+  private var frameHeight = 0
+  private var rotation = 0
+
+  // Crop of the frame being detected, or null for the whole frame.
+  private var crop: Rect? = null
+  // Upright bounding box of the last pose, in whole frame coordinates, or null if there is none.
+  private var region: RectF? = null
+  private var framesSinceFullFrame = 0
+
+  /**
+   * Returns the part of the next frame to detect in, in unrotated frame coordinates, or null for
+   * the whole frame. Crops have even bounds, so NV21 chroma stays aligned.
+   */
+  fun nextCrop(width: Int, height: Int, rotation: Int): Rect? {
+    if (width != frameWidth || height != frameHeight || rotation != this.rotation) {
+      frameWidth = width
+      frameHeight = height
+      this.rotation = rotation
+      region = null
+    }
+    val region = region
+    crop =
+      if (region == null || ++framesSinceFullFrame >= FULL_FRAME_INTERVAL) {
+        framesSinceFullFrame = 0
+        null
+      } else {
+        toCrop(region)
+      }
+    return crop
+  }
+
+  /**
+   * Updates the tracked region from the pose detected in the last crop. Returns where that crop
+   * starts in upright coordinates, which is the offset to add to the pose's landmark positions.
+   */
+  fun onPose(pose: Pose): PointF {
+    val offset = uprightOrigin(crop)
+    var left = Float.MAX_VALUE
+    var top = Float.MAX_VALUE
+    var right = -Float.MAX_VALUE
+    var bottom = -Float.MAX_VALUE
+    var visibleLandmarks = 0
+    for (landmark in pose.allPoseLandmarks) {
+      if (landmark.inFrameLikelihood < MIN_IN_FRAME_LIKELIHOOD) {
+        continue
+      }
+      val x = landmark.position.x + offset.x
+      val y = landmark.position.y + offset.y
+      left = min(left, x)
+      top = min(top, y)
+      right = max(right, x)
+      bottom = max(bottom, y)
+      visibleLandmarks++
+    }
+    region =
+      if (visibleLandmarks < MIN_VISIBLE_LANDMARKS) null else RectF(left, top, right, bottom)
+    return offset
+  }
+
+  /** Expands [region] by a margin and maps it to an even aligned crop of the frame. */
+  private fun toCrop(region: RectF): Rect? {
+    val uprightWidth = if (rotation % 180 == 0) frameWidth else frameHeight
+    val uprightHeight = if (rotation % 180 == 0) frameHeight else frameWidth
+    val minSize = MIN_CROP_FRACTION * min(uprightWidth, uprightHeight)
+    val halfWidth = max(region.width() * (0.5f + MARGIN), minSize / 2)
+    val halfHeight = max(region.height() * (0.5f + MARGIN), minSize / 2)
+    val left = max(0f, region.centerX() - halfWidth)
+    val top = max(0f, region.centerY() - halfHeight)
+    val right = min(uprightWidth.toFloat(), region.centerX() + halfWidth)
+    val bottom = min(uprightHeight.toFloat(), region.centerY() + halfHeight)
+    // Copying out most of the frame costs more than it saves.
+    if ((right - left) * (bottom - top) > MAX_CROP_AREA_FRACTION * uprightWidth * uprightHeight) {
+      return null
+    }
+
+    val corner1 = toFramePoint(left, top)
+    val corner2 = toFramePoint(right, bottom)
+    val crop =
+      Rect(
+        evenFloor(min(corner1.x, corner2.x)),
+        evenFloor(min(corner1.y, corner2.y)),
+        evenFloor(max(corner1.x, corner2.x)),
+        evenFloor(max(corner1.y, corner2.y))
+      )
+    return if (crop.isEmpty) null else crop
+  }
+
+  /** Maps a point of the upright image back to the unrotated frame. */
+  private fun toFramePoint(x: Float, y: Float): PointF =
+    when (rotation) {
+      90 -> PointF(y, frameHeight - x)
+      180 -> PointF(frameWidth - x, frameHeight - y)
+      270 -> PointF(frameWidth - y, x)
+      else -> PointF(x, y)
+    }
+
+  /** Returns the top left corner of [crop] once the frame is rotated upright. */
+  private fun uprightOrigin(crop: Rect?): PointF {
+    if (crop == null) {
+      return PointF(0f, 0f)
+    }
+    return when (rotation) {
+      90 -> PointF((frameHeight - crop.bottom).toFloat(), crop.left.toFloat())
+      180 -> PointF((frameWidth - crop.right).toFloat(), (frameHeight - crop.bottom).toFloat())
+      270 -> PointF(crop.top.toFloat(), (frameWidth - crop.right).toFloat())
+      else -> PointF(crop.left.toFloat(), crop.top.toFloat())
+    }
+  }
+
+  private fun evenFloor(value: Float): Int = value.toInt() and 1.inv()
+
+  companion object {
+    // Detect in the whole frame at least this often, in frames.
+    private const val FULL_FRAME_INTERVAL = 30
+    // Margin added on each side of the pose, relative to its size. Leaves room for movement
+    // until the next frame and for limbs the detector missed.
+    private const val MARGIN = 0.25f
+    // Crops are at least this fraction of the shorter frame side, so the detector has context.
+    private const val MIN_CROP_FRACTION = 0.3f
+    private const val MAX_CROP_AREA_FRACTION = 0.7f
+    private const val MIN_IN_FRAME_LIKELIHOOD = 0.5f
+    // A pose with fewer visible landmarks than this counts as lost.
+    private const val MIN_VISIBLE_LANDMARKS = 8
+  }
+}
@@ -0,0 +1,122 @@
+package com.cmp.pushuptracker.mlKit.posedetector
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.util.Log
+import com.cmp.pushuptracker.camera.PoseProcessor
+import com.cmp.pushuptracker.mlKit.classification.PoseClassifierCache
+import com.cmp.pushuptracker.mlKit.prefUtils.PreferenceUtils
+import com.cmp.pushuptracker.utils.WarmUpState
+import com.google.android.gms.tasks.Tasks
+import com.google.mlkit.vision.common.InputImage
+import com.google.mlkit.vision.pose.PoseDetection
+import com.google.mlkit.vision.pose.PoseDetector
+import com.google.mlkit.vision.pose.PoseDetectorOptionsBase
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Loads the pose classifier and the pose model the live preview is set to use in the background,
+ * so the first frames of a workout don't stall on sample parsing and model initialization.
+ *
+ * The warmed ML Kit detector is kept for the live preview to take, see [takeDetector]. The
+ * MediaPipe landmarker is kept by [PoseProcessor] itself until a session takes it.
+ */
+@Singleton
+class PoseWarmUpService @Inject constructor(
+  @ApplicationContext private val appContext: Context,
+  private val poseClassifierCache: PoseClassifierCache
+) {
+  private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+  private val _state = MutableStateFlow(WarmUpState.IDLE)
+  val state: StateFlow<WarmUpState> = _state.asStateFlow()
+
+  // The warmed detector and its options, until the live preview takes it.
+  private var warmDetector: PoseDetector? = null
+  private var warmDetectorOptions: PoseDetectorOptionsBase? = null
+
+  /** Starts warming up, unless it is already done or in progress. Safe to call from any thread. */
+  fun warmUp() {
+    if (!_state.compareAndSet(WarmUpState.IDLE, WarmUpState.WARMING_UP) &&
+      !_state.compareAndSet(WarmUpState.FAILED, WarmUpState.WARMING_UP)
+    ) {
+      return
+    }
+    scope.launch {
+      try {
+        val startMs = System.currentTimeMillis()
+        poseClassifierCache.get()
+        if (PreferenceUtils.getLivePreviewPoseBackend(appContext) ==
+          PreferenceUtils.LIVE_PREVIEW_POSE_BACKEND_MEDIAPIPE
+        ) {
+          PoseProcessor.preloadPoseLandmarker(appContext)
+        } else {
+          runDummyDetection()
+        }
+        Log.d(TAG, "Warm-up took ${System.currentTimeMillis() - startMs} ms")
+        _state.value = WarmUpState.READY
+      } catch (e: Exception) {
+        // Not fatal, the live preview loads whatever is missing on its first frame.
+        Log.e(TAG, "Warm-up failed", e)
+        _state.value = WarmUpState.FAILED
+      }
+    }
+  }
+
+  /**
+   * Returns the warmed detector if it was created with [options], handing it over to the caller,
+   * who closes it. Returns null if there's none, e.g. because warm-up hasn't finished or another
+   * session already took it; the caller then creates its own.
+   */
+  @Synchronized
+  fun takeDetector(options: PoseDetectorOptionsBase): PoseDetector? {
+    val detector = warmDetector ?: return null
+    warmDetector = null
+    if (warmDetectorOptions != options) {
+      // The settings changed since warm-up, so it's the wrong model.
+      detector.close()
+      return null
+    }
+    return detector
+  }
+
+  /**
+   * Loads the detector's native libraries and model with the options the live preview uses, and
+   * keeps the detector for [takeDetector].
+   */
+  private fun runDummyDetection() {
+    val options = PreferenceUtils.getPoseDetectorOptionsForLivePreview(appContext)
+    val detector = PoseDetection.getClient(options)
+    try {
+      val image =
+        Bitmap.createBitmap(WARM_UP_IMAGE_SIZE, WARM_UP_IMAGE_SIZE, Bitmap.Config.ARGB_8888)
+      Tasks.await(detector.process(InputImage.fromBitmap(image, 0)))
+      image.recycle()
+    } catch (e: Exception) {
+      detector.close()
+      throw e
+    }
+    keepDetector(detector, options)
+  }
+
+  @Synchronized
+  private fun keepDetector(detector: PoseDetector, options: PoseDetectorOptionsBase) {
+    warmDetector?.close()
+    warmDetector = detector
+    warmDetectorOptions = options
+  }
+
+  companion object {
+    private const val TAG = "PoseWarmUpService"
+    private const val WARM_UP_IMAGE_SIZE = 256
+  }
+}
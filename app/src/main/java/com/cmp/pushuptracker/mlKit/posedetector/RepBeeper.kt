@@ -0,0 +1,35 @@
+package com.cmp.pushuptracker.mlKit.posedetector
+
+import android.media.AudioManager
+import android.media.ToneGenerator
+
+/**
+ * Beeps whenever the push-up count from [com.cmp.pushuptracker.pose.AngleRepCounter] goes up,
+ * which keeps sound out of the counter itself. Thread safe, so it can be released while reps are
+ * still coming in.
+ */
+internal class RepBeeper {
+  private var lastRepCount = 0
+  private var toneGenerator: ToneGenerator? = null
+
+  /** Takes the latest rep count, beeping if it went up since the last one. */
+  @Synchronized
+  fun onRepCount(repCount: Int) {
+    if (repCount > lastRepCount) {
+      // Play a fun beep when rep counter updates.
+      val tg =
+        toneGenerator ?: ToneGenerator(AudioManager.STREAM_NOTIFICATION, 100).also {
+          toneGenerator = it
+        }
+      tg.startTone(ToneGenerator.TONE_PROP_BEEP)
+    }
+    lastRepCount = repCount
+  }
+
+  /** Frees the tone generator. A later rep creates a new one. */
+  @Synchronized
+  fun release() {
+    toneGenerator?.release()
+    toneGenerator = null
+  }
+}
@@ -19,24 +19,34 @@ package com.cmp.pushuptracker.mlKit.posedetector
 import android.app.ActivityManager
 import android.content.Context
 import android.graphics.Bitmap
+import android.graphics.PixelFormat
+import android.graphics.Rect
 import android.os.Build.VERSION_CODES
 import android.os.SystemClock
 import android.util.Log
 import android.widget.Toast
-import androidx.annotation.GuardedBy
 import androidx.annotation.RequiresApi
 import androidx.camera.core.ExperimentalGetImage
 import androidx.camera.core.ImageProxy
 import com.cmp.pushuptracker.mlKit.prefUtils.PreferenceUtils
+import com.cmp.pushuptracker.mlKit.utils.BitmapPool
+import com.cmp.pushuptracker.mlKit.utils.BitmapPool.PooledBitmap
 import com.cmp.pushuptracker.mlKit.utils.BitmapUtils
+import com.cmp.pushuptracker.mlKit.utils.ByteBufferPool
 import com.cmp.pushuptracker.mlKit.utils.CameraImageGraphic
+import com.cmp.pushuptracker.mlKit.utils.FrameDropCounter
+import com.cmp.pushuptracker.mlKit.utils.FrameGate
 import com.cmp.pushuptracker.mlKit.utils.FrameMetadata
+import com.cmp.pushuptracker.mlKit.utils.FrameRateGovernor
+import com.cmp.pushuptracker.mlKit.utils.FrameStage
 import com.cmp.pushuptracker.mlKit.utils.GraphicOverlay
 import com.cmp.pushuptracker.mlKit.utils.InferenceInfoGraphic
 import com.cmp.pushuptracker.mlKit.utils.ScopedExecutor
+import com.cmp.pushuptracker.mlKit.utils.TemperatureMonitor
 import com.cmp.pushuptracker.mlKit.utils.VisionImageProcessor
 import com.google.android.gms.tasks.OnFailureListener
 import com.google.android.gms.tasks.OnSuccessListener
+import com.google.android.gms.tasks.SuccessContinuation
 import com.google.android.gms.tasks.Task
 import com.google.android.gms.tasks.TaskExecutors
 import com.google.android.gms.tasks.Tasks
@@ -51,6 +61,11 @@ import java.lang.Math.min
 import java.nio.ByteBuffer
 import java.util.Timer
 import java.util.TimerTask
+import java.util.concurrent.Callable
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
 
 /**
  * Abstract base class for ML Kit frame processors. Subclasses need to implement {@link
@@ -64,12 +79,44 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
   companion object {
     const val MANUAL_TESTING_LOG = "LogTagForTest"
     private const val TAG = "VisionProcessorBase"
+    internal val DIRECT_EXECUTOR = Executor { it.run() }
   }
 
   private var activityManager: ActivityManager =
     context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
   private val fpsTimer = Timer()
-  private val executor = ScopedExecutor(TaskExecutors.MAIN_THREAD)
+  // Result handling, stats and starting the next frame run on this thread instead of the main
+  // thread, so UI jank doesn't hold back detection. Only drawing the overlay happens on the main
+  // thread. The thread exits when idle, so the executor never needs shutting down.
+  private val pipelineExecutor =
+    ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, LinkedBlockingQueue()).apply {
+      allowCoreThreadTimeOut(true)
+    }
+  private val executor = ScopedExecutor(pipelineExecutor)
+  // Camera frames drawn on the overlay when the live viewport is off: one on screen, one waiting
+  // for its detection result and one being converted.
+  private val cameraImagePool = BitmapPool(3)
+
+  // Whether detection, post-processing and rendering run as separate stages, see
+  // requestDetectInImage. Otherwise the next frame only starts once the last one is handled.
+  private val isPipelined = PreferenceUtils.isPipelinedProcessingEnabled(context)
+  private val detectionStage = FrameStage("detect", DIRECT_EXECUTOR)
+  private val postProcessStage = FrameStage("post-process", DIRECT_EXECUTOR)
+  private val renderStage = FrameStage("render", executor)
+  private val stages = listOf(detectionStage, postProcessStage, renderStage)
+
+  // Adapts the analysis rate, and the model for subclasses that have a choice, to how well the
+  // device keeps up over a session.
+  protected val frameRateGovernor = FrameRateGovernor()
+  /** Camera frames that never got results, by why they were dropped. */
+  val frameDrops = FrameDropCounter()
+  // Skips still scenes and paces frames. They aren't kept out while busy: the frame stages decide
+  // which ones wait.
+  private val frameGate = FrameGate(frameRateGovernor, frameDrops, false)
+  // Frame parts copied out for detection, see selectRegionOfInterest.
+  private val cropBufferPool = ByteBufferPool(2)
+  private val temperatureMonitor =
+    TemperatureMonitor(context).also { frameRateGovernor.setTemperatureMonitor(it) }
 
   // Whether this processor is already shut down
   private var isShutdown = false
@@ -87,13 +134,6 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
   private var frameProcessedInOneSecondInterval = 0
   private var framesPerSecond = 0
 
-  // To keep the latest images and its metadata.
-  @GuardedBy("this") private var latestImage: ByteBuffer? = null
-  @GuardedBy("this") private var latestImageMetaData: FrameMetadata? = null
-  // To keep the images and metadata in process.
-  @GuardedBy("this") private var processingImage: ByteBuffer? = null
-  @GuardedBy("this") private var processingMetaData: FrameMetadata? = null
-
   init {
     fpsTimer.scheduleAtFixedRate(
       object : TimerTask() {
@@ -110,6 +150,7 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
   // -----------------Code for processing single still image----------------------------------------
   override fun processBitmap(bitmap: Bitmap?, graphicOverlay: GraphicOverlay) {
     val frameStartMs = SystemClock.elapsedRealtime()
+    val captureTimeMs = frameStartMs
 
     if (isMlImageEnabled(graphicOverlay.context)) {
       val mlImage = BitmapMlImageBuilder(bitmap!!).build()
@@ -118,7 +159,8 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
         graphicOverlay,
         /* originalCameraImage= */ null,
         /* shouldShowFps= */ false,
-        frameStartMs
+        frameStartMs,
+        captureTimeMs
       )
       mlImage.close()
       return
@@ -129,79 +171,9 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
       graphicOverlay,
       /* originalCameraImage= */ null,
       /* shouldShowFps= */ false,
-      frameStartMs
-    )
-  }
-
-  // -----------------Code for processing live preview frame from Camera1 API-----------------------
-  @Synchronized
-  override fun processByteBuffer(
-    data: ByteBuffer?,
-    frameMetadata: FrameMetadata?,
-    graphicOverlay: GraphicOverlay
-  ) {
-    latestImage = data
-    latestImageMetaData = frameMetadata
-    if (processingImage == null && processingMetaData == null) {
-      processLatestImage(graphicOverlay)
-    }
-  }
-
-  @Synchronized
-  private fun processLatestImage(graphicOverlay: GraphicOverlay) {
-    processingImage = latestImage
-    processingMetaData = latestImageMetaData
-    latestImage = null
-    latestImageMetaData = null
-    if (processingImage != null && processingMetaData != null && !isShutdown) {
-      processImage(processingImage!!, processingMetaData!!, graphicOverlay)
-    }
-  }
-
-  private fun processImage(
-    data: ByteBuffer,
-    frameMetadata: FrameMetadata,
-    graphicOverlay: GraphicOverlay
-  ) {
-    val frameStartMs = SystemClock.elapsedRealtime()
-    // If live viewport is on (that is the underneath surface view takes care of the camera preview
-    // drawing), skip the unnecessary bitmap creation that used for the manual preview drawing.
-    val bitmap =
-      if (PreferenceUtils.isCameraLiveViewportEnabled(graphicOverlay.context)) null
-      else BitmapUtils.getBitmap(data, frameMetadata)
-
-    if (isMlImageEnabled(graphicOverlay.context)) {
-      val mlImage =
-        ByteBufferMlImageBuilder(
-            data,
-            frameMetadata.width,
-            frameMetadata.height,
-            MlImage.IMAGE_FORMAT_NV21
-          )
-          .setRotation(frameMetadata.rotation)
-          .build()
-      requestDetectInImage(mlImage, graphicOverlay, bitmap, /* shouldShowFps= */ true, frameStartMs)
-        .addOnSuccessListener(executor) { processLatestImage(graphicOverlay) }
-
-      // This is optional. Java Garbage collection can also close it eventually.
-      mlImage.close()
-      return
-    }
-
-    requestDetectInImage(
-      InputImage.fromByteBuffer(
-        data,
-        frameMetadata.width,
-        frameMetadata.height,
-        frameMetadata.rotation,
-        InputImage.IMAGE_FORMAT_NV21
-      ),
-      graphicOverlay,
-      bitmap,
-      /* shouldShowFps= */ true,
-      frameStartMs
+      frameStartMs,
+      captureTimeMs
     )
-      .addOnSuccessListener(executor) { processLatestImage(graphicOverlay) }
   }
 
   // -----------------Code for processing live preview frame from CameraX API-----------------------
@@ -209,172 +181,433 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
   @ExperimentalGetImage
   override fun processImageProxy(image: ImageProxy, graphicOverlay: GraphicOverlay) {
     val frameStartMs = SystemClock.elapsedRealtime()
+    val captureTimeMs = TimeUnit.NANOSECONDS.toMillis(image.imageInfo.timestamp)
     if (isShutdown) {
+      // An open frame would keep CameraX from delivering any more, e.g. to the next processor.
+      image.close()
+      frameDrops.count(FrameDropCounter.Reason.UNAVAILABLE)
       return
     }
-    var bitmap: Bitmap? = null
+    if (!frameGate.admit(image)) {
+      return
+    }
+    if (image.format == PixelFormat.RGBA_8888) {
+      processRgbaImageProxy(image, graphicOverlay, frameStartMs, captureTimeMs)
+      return
+    }
+    var bitmap: PooledBitmap? = null
     if (!PreferenceUtils.isCameraLiveViewportEnabled(graphicOverlay.context)) {
-      bitmap = BitmapUtils.getBitmap(image)
+      bitmap = BitmapUtils.getBitmap(image, cameraImagePool)
+    }
+
+    val rotation = image.imageInfo.rotationDegrees
+    val crop =
+      selectRegionOfInterest(
+        FrameMetadata.Builder()
+          .setWidth(image.width)
+          .setHeight(image.height)
+          .setRotation(rotation)
+          .build()
+      )
+    if (crop != null) {
+      requestDetectInCrop(
+          crop,
+          rotation,
+          graphicOverlay,
+          bitmap,
+          frameStartMs,
+          captureTimeMs
+        ) {
+          BitmapUtils.cropNV21(image.image!!, crop, it)
+        }
+        // Detection only needs the copied crop, but holding on to the frame until it's done is
+        // what keeps CameraX from delivering the next one too early.
+        .addOnCompleteListener(DIRECT_EXECUTOR) { image.close() }
+      return
     }
 
     if (isMlImageEnabled(graphicOverlay.context)) {
-      val mlImage =
-        MediaMlImageBuilder(image.image!!).setRotation(image.imageInfo.rotationDegrees).build()
+      val mlImage = MediaMlImageBuilder(image.image!!).setRotation(rotation).build()
       requestDetectInImage(
         mlImage,
         graphicOverlay,
         /* originalCameraImage= */ bitmap,
         /* shouldShowFps= */ true,
-        frameStartMs
+        frameStartMs,
+        captureTimeMs
       )
         // When the image is from CameraX analysis use case, must call image.close() on received
         // images when finished using them. Otherwise, new images may not be received or the camera
         // may stall.
         // Currently MlImage doesn't support ImageProxy directly, so we still need to call
         // ImageProxy.close() here.
-        .addOnCompleteListener { image.close() }
+        .addOnCompleteListener(DIRECT_EXECUTOR) { image.close() }
 
       return
     }
 
     requestDetectInImage(
-      InputImage.fromMediaImage(image.image!!, image.imageInfo.rotationDegrees),
+      InputImage.fromMediaImage(image.image!!, rotation),
       graphicOverlay,
       /* originalCameraImage= */ bitmap,
       /* shouldShowFps= */ true,
-      frameStartMs
+      frameStartMs,
+      captureTimeMs
     )
       // When the image is from CameraX analysis use case, must call image.close() on received
       // images when finished using them. Otherwise, new images may not be received or the camera
       // may stall.
-      .addOnCompleteListener { image.close() }
+      .addOnCompleteListener(DIRECT_EXECUTOR) { image.close() }
+  }
+
+  /**
+   * Processes an RGBA_8888 frame, which CameraXSource delivers if asked to. The detector can't
+   * take these as media images, so they go through a bitmap and aren't cropped. The frame itself
+   * is only shown by the live preview.
+   */
+  private fun processRgbaImageProxy(
+    image: ImageProxy,
+    graphicOverlay: GraphicOverlay,
+    frameStartMs: Long,
+    captureTimeMs: Long
+  ) {
+    val rotation = image.imageInfo.rotationDegrees
+    val bitmap = image.toBitmap()
+    val detected =
+      if (isMlImageEnabled(graphicOverlay.context)) {
+        val mlImage = BitmapMlImageBuilder(bitmap).setRotation(rotation).build()
+        requestDetectInImage(
+            mlImage,
+            graphicOverlay,
+            /* originalCameraImage= */ null,
+            /* shouldShowFps= */ true,
+            frameStartMs,
+            captureTimeMs
+          )
+          .also { mlImage.close() }
+      } else {
+        requestDetectInImage(
+          InputImage.fromBitmap(bitmap, rotation),
+          graphicOverlay,
+          /* originalCameraImage= */ null,
+          /* shouldShowFps= */ true,
+          frameStartMs,
+          captureTimeMs
+        )
+      }
+    // Only closed once detection is done, so CameraX doesn't deliver the next frame too early.
+    detected.addOnCompleteListener(DIRECT_EXECUTOR) { image.close() }
+  }
+
+  /** Detects in an NV21 frame, through an [MlImage] if enabled. */
+  private fun requestDetectInNV21(
+    data: ByteBuffer,
+    width: Int,
+    height: Int,
+    rotation: Int,
+    graphicOverlay: GraphicOverlay,
+    originalCameraImage: PooledBitmap?,
+    frameStartMs: Long,
+    captureTimeMs: Long
+  ): Task<T> {
+    if (isMlImageEnabled(graphicOverlay.context)) {
+      val mlImage =
+        ByteBufferMlImageBuilder(data, width, height, MlImage.IMAGE_FORMAT_NV21)
+          .setRotation(rotation)
+          .build()
+      val detected =
+        requestDetectInImage(
+          mlImage,
+          graphicOverlay,
+          originalCameraImage,
+          /* shouldShowFps= */ true,
+          frameStartMs,
+          captureTimeMs
+        )
+
+      // This is optional. Java Garbage collection can also close it eventually.
+      mlImage.close()
+      return detected
+    }
+
+    return requestDetectInImage(
+      InputImage.fromByteBuffer(data, width, height, rotation, InputImage.IMAGE_FORMAT_NV21),
+      graphicOverlay,
+      originalCameraImage,
+      /* shouldShowFps= */ true,
+      frameStartMs,
+      captureTimeMs
+    )
+  }
+
+  /**
+   * Detects in the [crop] part of a frame only, see [selectRegionOfInterest]. [copyCrop] copies
+   * that part into the given buffer as NV21. The overlay still shows the whole frame.
+   */
+  private fun requestDetectInCrop(
+    crop: Rect,
+    rotation: Int,
+    graphicOverlay: GraphicOverlay,
+    originalCameraImage: PooledBitmap?,
+    frameStartMs: Long,
+    captureTimeMs: Long,
+    copyCrop: (ByteBuffer) -> Unit
+  ): Task<T> {
+    val cropBuffer = cropBufferPool.acquire(BitmapUtils.getNV21Size(crop.width(), crop.height()))
+    copyCrop(cropBuffer)
+    return requestDetectInNV21(
+        cropBuffer,
+        crop.width(),
+        crop.height(),
+        rotation,
+        graphicOverlay,
+        originalCameraImage,
+        frameStartMs,
+        captureTimeMs
+      )
+      .addOnCompleteListener(DIRECT_EXECUTOR) { cropBufferPool.release(cropBuffer) }
   }
 
   // -----------------Common processing logic-------------------------------------------------------
   private fun requestDetectInImage(
     image: InputImage,
     graphicOverlay: GraphicOverlay,
-    originalCameraImage: Bitmap?,
+    originalCameraImage: PooledBitmap?,
     shouldShowFps: Boolean,
-    frameStartMs: Long
+    frameStartMs: Long,
+    captureTimeMs: Long
   ): Task<T> {
-    return setUpListener(
-      detectInImage(image),
+    return requestDetectInImage(
+      { detectInImage(image) },
       graphicOverlay,
       originalCameraImage,
       shouldShowFps,
-      frameStartMs
+      frameStartMs,
+      captureTimeMs
     )
   }
 
   private fun requestDetectInImage(
     image: MlImage,
     graphicOverlay: GraphicOverlay,
-    originalCameraImage: Bitmap?,
+    originalCameraImage: PooledBitmap?,
     shouldShowFps: Boolean,
-    frameStartMs: Long
+    frameStartMs: Long,
+    captureTimeMs: Long
   ): Task<T> {
-    return setUpListener(
-      detectInImage(image),
+    return requestDetectInImage(
+      { detectInImage(image) },
       graphicOverlay,
       originalCameraImage,
       shouldShowFps,
-      frameStartMs
+      frameStartMs,
+      captureTimeMs
     )
   }
 
-  private fun setUpListener(
-    task: Task<T>,
+  /**
+   * Runs detection, [postProcess] and rendering for one frame. The returned task completes once
+   * the detector is free for the next frame, which in pipelined mode is right after detection.
+   */
+  private fun requestDetectInImage(
+    detect: () -> Task<T>,
     graphicOverlay: GraphicOverlay,
-    originalCameraImage: Bitmap?,
+    originalCameraImage: PooledBitmap?,
     shouldShowFps: Boolean,
-    frameStartMs: Long
+    frameStartMs: Long,
+    captureTimeMs: Long
   ): Task<T> {
     val detectorStartMs = SystemClock.elapsedRealtime()
-    return task
-      .addOnSuccessListener(
-        executor,
-        OnSuccessListener { results: T ->
-          val endMs = SystemClock.elapsedRealtime()
-          val currentFrameLatencyMs = endMs - frameStartMs
-          val currentDetectorLatencyMs = endMs - detectorStartMs
-          if (numRuns >= 500) {
-            resetLatencyStats()
+    // The latest results of this frame that aren't on the overlay yet, see onDropped. Set and read
+    // by one continuation after the other, each running once the previous one is done.
+    var pendingResults: T? = null
+    if (!isPipelined) {
+      return detect()
+        .onSuccessTask(
+          DIRECT_EXECUTOR,
+          SuccessContinuation { results: T ->
+            pendingResults = results
+            postProcess(results, captureTimeMs)
           }
-          numRuns++
-          frameProcessedInOneSecondInterval++
-          totalFrameMs += currentFrameLatencyMs
-          maxFrameMs = max(currentFrameLatencyMs, maxFrameMs)
-          minFrameMs = min(currentFrameLatencyMs, minFrameMs)
-          totalDetectorMs += currentDetectorLatencyMs
-          maxDetectorMs = max(currentDetectorLatencyMs, maxDetectorMs)
-          minDetectorMs = min(currentDetectorLatencyMs, minDetectorMs)
-
-          // Only log inference info once per second. When frameProcessedInOneSecondInterval is
-          // equal to 1, it means this is the first frame processed during the current second.
-          if (frameProcessedInOneSecondInterval == 1) {
-            Log.d(TAG, "Num of Runs: $numRuns")
-            Log.d(
-              TAG,
-              "Frame latency: max=" +
-                maxFrameMs +
-                ", min=" +
-                minFrameMs +
-                ", avg=" +
-                totalFrameMs / numRuns
-            )
-            Log.d(
-              TAG,
-              "Detector latency: max=" +
-                maxDetectorMs +
-                ", min=" +
-                minDetectorMs +
-                ", avg=" +
-                totalDetectorMs / numRuns
+        )
+        .addOnSuccessListener(
+          executor,
+          OnSuccessListener { results: T ->
+            pendingResults = null
+            render(
+              results,
+              graphicOverlay,
+              originalCameraImage,
+              shouldShowFps,
+              frameStartMs,
+              detectorStartMs
             )
-            val mi = ActivityManager.MemoryInfo()
-            activityManager.getMemoryInfo(mi)
-            val availableMegs: Long = mi.availMem / 0x100000L
-            Log.d(TAG, "Memory available in system: $availableMegs MB")
           }
-          graphicOverlay.clear()
-          if (originalCameraImage != null) {
-            graphicOverlay.add(CameraImageGraphic(graphicOverlay, originalCameraImage))
+        )
+        .addOnFailureListener(
+          executor,
+          OnFailureListener { e: Exception ->
+            pendingResults?.let { onDropped(it) }
+            handleFailure(e, graphicOverlay, originalCameraImage)
           }
-          this@VisionProcessorBase.onSuccess(results, graphicOverlay)
-          if (!PreferenceUtils.shouldHideDetectionInfo(graphicOverlay.context)) {
-            graphicOverlay.add(
-              InferenceInfoGraphic(
+        )
+    }
+
+    // Each stage holds at most one frame waiting behind the one it is working on and drops the
+    // older one when a newer frame arrives, so detection of the next frame overlaps
+    // post-processing and rendering of this one without building up latency.
+    val detected = detectionStage.submit(Callable { detect() })
+    detected
+      .onSuccessTask(
+        DIRECT_EXECUTOR,
+        SuccessContinuation { results: T ->
+          pendingResults = results
+          postProcessStage.submit(Callable { postProcess(results, captureTimeMs) })
+        }
+      )
+      .onSuccessTask(
+        DIRECT_EXECUTOR,
+        SuccessContinuation { results: T ->
+          pendingResults = results
+          renderStage.submit(
+            Callable {
+              pendingResults = null
+              render(
+                results,
                 graphicOverlay,
-                currentFrameLatencyMs,
-                currentDetectorLatencyMs,
-                if (shouldShowFps) framesPerSecond else null
+                originalCameraImage,
+                shouldShowFps,
+                frameStartMs,
+                detectorStartMs
               )
-            )
-          }
-          graphicOverlay.postInvalidate()
+              Tasks.forResult(results)
+            }
+          )
         }
       )
       .addOnFailureListener(
         executor,
         OnFailureListener { e: Exception ->
-          graphicOverlay.clear()
-          graphicOverlay.postInvalidate()
-          val error = "Failed to process. Error: " + e.localizedMessage
-          Toast.makeText(
-              graphicOverlay.context,
-              """
-          $error
-          Cause: ${e.cause}
-          """.trimIndent(),
-              Toast.LENGTH_SHORT
-            )
-            .show()
-          Log.d(TAG, error)
-          e.printStackTrace()
-          this@VisionProcessorBase.onFailure(e)
+          pendingResults?.let { onDropped(it) }
+          handleFailure(e, graphicOverlay, originalCameraImage)
         }
       )
+      // Frames dropped by a stage never get rendered, so nothing else releases their bitmap or
+      // results.
+      .addOnCanceledListener(DIRECT_EXECUTOR) {
+        pendingResults?.let { onDropped(it) }
+        originalCameraImage?.release()
+        frameRateGovernor.onFrameDropped()
+        frameDrops.count(FrameDropCounter.Reason.BUSY)
+      }
+    return detected
+  }
+
+  /** Puts the results of a frame on the overlay. Runs on the pipeline thread. */
+  private fun render(
+    results: T,
+    graphicOverlay: GraphicOverlay,
+    originalCameraImage: PooledBitmap?,
+    shouldShowFps: Boolean,
+    frameStartMs: Long,
+    detectorStartMs: Long
+  ) {
+    val endMs = SystemClock.elapsedRealtime()
+    val currentFrameLatencyMs = endMs - frameStartMs
+    val currentDetectorLatencyMs = endMs - detectorStartMs
+    if (numRuns >= 500) {
+      resetLatencyStats()
+    }
+    numRuns++
+    frameProcessedInOneSecondInterval++
+    totalFrameMs += currentFrameLatencyMs
+    maxFrameMs = max(currentFrameLatencyMs, maxFrameMs)
+    minFrameMs = min(currentFrameLatencyMs, minFrameMs)
+    totalDetectorMs += currentDetectorLatencyMs
+    maxDetectorMs = max(currentDetectorLatencyMs, maxDetectorMs)
+    minDetectorMs = min(currentDetectorLatencyMs, minDetectorMs)
+    // Only stream frames tell the governor how the device keeps up.
+    if (shouldShowFps) {
+      frameRateGovernor.onFrameProcessed(currentDetectorLatencyMs)
+    }
+
+    // Only log inference info once per second. When frameProcessedInOneSecondInterval is
+    // equal to 1, it means this is the first frame processed during the current second.
+    if (frameProcessedInOneSecondInterval == 1) {
+      Log.d(TAG, "Num of Runs: $numRuns")
+      Log.d(
+        TAG,
+        "Frame latency: max=" +
+          maxFrameMs +
+          ", min=" +
+          minFrameMs +
+          ", avg=" +
+          totalFrameMs / numRuns
+      )
+      Log.d(
+        TAG,
+        "Detector latency: max=" +
+          maxDetectorMs +
+          ", min=" +
+          minDetectorMs +
+          ", avg=" +
+          totalDetectorMs / numRuns
+      )
+      val mi = ActivityManager.MemoryInfo()
+      activityManager.getMemoryInfo(mi)
+      val availableMegs: Long = mi.availMem / 0x100000L
+      Log.d(TAG, "Memory available in system: $availableMegs MB")
+      Log.d(TAG, "Frames dropped: $frameDrops")
+      if (isPipelined) {
+        Log.d(TAG, "Stage occupancy: " + stages.joinToString())
+        stages.forEach { it.resetStats() }
+      }
+    }
+    graphicOverlay.update {
+      graphicOverlay.clear()
+      if (originalCameraImage != null) {
+        graphicOverlay.add(CameraImageGraphic(graphicOverlay, originalCameraImage))
+        // The graphic holds its own reference until the overlay is cleared.
+        originalCameraImage.release()
+      }
+      this@VisionProcessorBase.onSuccess(results, graphicOverlay)
+      if (!PreferenceUtils.shouldHideDetectionInfo(graphicOverlay.context)) {
+        graphicOverlay.add(
+          InferenceInfoGraphic(
+            graphicOverlay,
+            currentFrameLatencyMs,
+            currentDetectorLatencyMs,
+            if (shouldShowFps) framesPerSecond else null
+          )
+        )
+      }
+    }
+  }
+
+  private fun handleFailure(
+    e: Exception,
+    graphicOverlay: GraphicOverlay,
+    originalCameraImage: PooledBitmap?
+  ) {
+    originalCameraImage?.release()
+    frameDrops.count(FrameDropCounter.Reason.UNAVAILABLE)
+    graphicOverlay.clear()
+    graphicOverlay.postInvalidate()
+    val error = "Failed to process. Error: " + e.localizedMessage
+    TaskExecutors.MAIN_THREAD.execute {
+      Toast.makeText(
+          graphicOverlay.context,
+          """
+      $error
+      Cause: ${e.cause}
+      """.trimIndent(),
+          Toast.LENGTH_SHORT
+        )
+        .show()
+    }
+    Log.d(TAG, error)
+    e.printStackTrace()
+    this@VisionProcessorBase.onFailure(e)
   }
 
   override fun stop() {
@@ -382,6 +615,8 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
     isShutdown = true
     resetLatencyStats()
     fpsTimer.cancel()
+    temperatureMonitor.stop()
+    cameraImagePool.clear()
   }
 
   private fun resetLatencyStats() {
@@ -405,8 +640,29 @@ abstract class VisionProcessorBase<T>(context: Context) : VisionImageProcessor {
     )
   }
 
+  /**
+   * Returns the part of a camera frame to detect in, in unrotated frame coordinates with even
+   * bounds, or null for the whole frame. Called once per YUV frame, right before [detectInImage].
+   */
+  protected open fun selectRegionOfInterest(frameMetadata: FrameMetadata): Rect? = null
+
+  /**
+   * Works on the detection results before they are rendered, e.g. to classify them. In pipelined
+   * mode this runs as its own stage, so the detector can start on the next frame meanwhile.
+   * [captureTimeMs] is when the frame was captured, on a monotonic clock.
+   */
+  protected open fun postProcess(results: T, captureTimeMs: Long): Task<T> {
+    return Tasks.forResult(results)
+  }
+
   protected abstract fun onSuccess(results: T, graphicOverlay: GraphicOverlay)
 
+  /**
+   * Called instead of [onSuccess] for results that never reach the overlay, because a later stage
+   * dropped or failed their frame, so subclasses can free what the results hold.
+   */
+  protected open fun onDropped(results: T) {}
+
   protected abstract fun onFailure(e: Exception)
 
   protected open fun isMlImageEnabled(context: Context?): Boolean {
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Build.VERSION_CODES;
 import android.preference.PreferenceManager;
+import android.util.Size;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
@@ -27,21 +28,24 @@ import androidx.annotation.StringRes;
 import androidx.camera.core.CameraSelector;
 
 import com.cmp.pushuptracker.R;
-import com.cmp.pushuptracker.mlKit.utils.CameraSource;
-import com.google.android.gms.common.images.Size;
 import com.google.common.base.Preconditions;
 import com.google.mlkit.common.model.LocalModel;
 import com.google.mlkit.vision.pose.PoseDetectorOptionsBase;
 import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions;
 import com.google.mlkit.vision.pose.defaults.PoseDetectorOptions;
 
-import java.util.Objects;
-
 /** Utility class to retrieve shared preferences. */
 public class PreferenceUtils {
 
   private static final int POSE_DETECTOR_PERFORMANCE_MODE_FAST = 1;
 
+  /** Live preview detects poses with its own ML Kit detector, see PoseDetectorProcessor. */
+  public static final int LIVE_PREVIEW_POSE_BACKEND_DEFAULT = 0;
+  /** Live preview detects poses with {@link com.cmp.pushuptracker.pose.MlKitPoseBackend}. */
+  public static final int LIVE_PREVIEW_POSE_BACKEND_ML_KIT = 1;
+  /** Live preview detects poses with {@link com.cmp.pushuptracker.camera.PoseProcessor}. */
+  public static final int LIVE_PREVIEW_POSE_BACKEND_MEDIAPIPE = 2;
+
   static void saveString(Context context, @StringRes int prefKeyId, @Nullable String value) {
     PreferenceManager.getDefaultSharedPreferences(context)
         .edit()
@@ -49,26 +53,22 @@ public class PreferenceUtils {
         .apply();
   }
 
+  /**
+   * Returns the size CameraX should analyze frames at for the camera facing {@code lensFacing}, or
+   * null to leave it to CameraX.
+   */
   @Nullable
-  public static CameraSource.SizePair getCameraPreviewSizePair(Context context, int cameraId) {
+  public static Size getCameraXTargetResolution(Context context, int lensFacing) {
     Preconditions.checkArgument(
-        cameraId == CameraSource.CAMERA_FACING_BACK
-            || cameraId == CameraSource.CAMERA_FACING_FRONT);
-    String previewSizePrefKey;
-    String pictureSizePrefKey;
-    if (cameraId == CameraSource.CAMERA_FACING_BACK) {
-      previewSizePrefKey = context.getString(R.string.pref_key_rear_camera_preview_size);
-      pictureSizePrefKey = context.getString(R.string.pref_key_rear_camera_picture_size);
-    } else {
-      previewSizePrefKey = context.getString(R.string.pref_key_front_camera_preview_size);
-      pictureSizePrefKey = context.getString(R.string.pref_key_front_camera_picture_size);
-    }
-
+        lensFacing == CameraSelector.LENS_FACING_BACK
+            || lensFacing == CameraSelector.LENS_FACING_FRONT);
+    String prefKey =
+        lensFacing == CameraSelector.LENS_FACING_BACK
+            ? context.getString(R.string.pref_key_camerax_rear_camera_target_resolution)
+            : context.getString(R.string.pref_key_camerax_front_camera_target_resolution);
+    SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
     try {
-      SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
-      return new CameraSource.SizePair(
-          Size.parseSize(Objects.requireNonNull(sharedPreferences.getString(previewSizePrefKey, null))),
-          Size.parseSize(Objects.requireNonNull(sharedPreferences.getString(pictureSizePrefKey, null))));
+      return Size.parseSize(sharedPreferences.getString(prefKey, null));
     } catch (Exception e) {
       return null;
     }
@@ -86,10 +86,28 @@ public class PreferenceUtils {
             context,
             R.string.pref_key_live_preview_pose_detection_performance_mode,
             POSE_DETECTOR_PERFORMANCE_MODE_FAST);
+    return getPoseDetectorOptions(
+        performanceMode != POSE_DETECTOR_PERFORMANCE_MODE_FAST,
+        !isPoseRegionOfInterestUsed(context));
+  }
+
+  /**
+   * Returns options for the accurate or the fast pose model, regardless of the preference. Lets
+   * {@link com.cmp.pushuptracker.mlKit.utils.FrameRateGovernor} switch models.
+   *
+   * @param streamMode whether the detector tracks the pose from one frame to the next, which
+   *     needs every frame to show the same view
+   */
+  public static PoseDetectorOptionsBase getPoseDetectorOptions(
+      boolean accurate, boolean streamMode) {
     boolean preferGPU = true;
-    if (performanceMode == POSE_DETECTOR_PERFORMANCE_MODE_FAST) {
+    if (!accurate) {
       PoseDetectorOptions.Builder builder =
-          new PoseDetectorOptions.Builder().setDetectorMode(PoseDetectorOptions.STREAM_MODE);
+          new PoseDetectorOptions.Builder()
+              .setDetectorMode(
+                  streamMode
+                      ? PoseDetectorOptions.STREAM_MODE
+                      : PoseDetectorOptions.SINGLE_IMAGE_MODE);
       if (preferGPU) {
         builder.setPreferredHardwareConfigs(PoseDetectorOptions.CPU_GPU);
       }
@@ -97,7 +115,10 @@ public class PreferenceUtils {
     } else {
       AccuratePoseDetectorOptions.Builder builder =
           new AccuratePoseDetectorOptions.Builder()
-              .setDetectorMode(AccuratePoseDetectorOptions.STREAM_MODE);
+              .setDetectorMode(
+                  streamMode
+                      ? AccuratePoseDetectorOptions.STREAM_MODE
+                      : AccuratePoseDetectorOptions.SINGLE_IMAGE_MODE);
       if (preferGPU) {
         builder.setPreferredHardwareConfigs(AccuratePoseDetectorOptions.CPU_GPU);
       }
@@ -123,5 +144,44 @@ public class PreferenceUtils {
     return sharedPreferences.getBoolean(prefKey, false);
   }
 
+  /**
+   * Whether live preview frames go through separate detection, post-processing and rendering
+   * stages, so detection of one frame overlaps classification and drawing of the previous one.
+   */
+  public static boolean isPipelinedProcessingEnabled(Context context) {
+    SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    String prefKey = context.getString(R.string.pref_key_pipelined_processing);
+    return sharedPreferences.getBoolean(prefKey, false);
+  }
+
+  /**
+   * Whether live pose detection runs on an expanded box around the last pose instead of the whole
+   * frame, falling back to the whole frame when the pose is lost and at regular intervals.
+   */
+  public static boolean isPoseRegionOfInterestEnabled(Context context) {
+    SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    String prefKey = context.getString(R.string.pref_key_pose_region_of_interest);
+    return sharedPreferences.getBoolean(prefKey, false);
+  }
+
+  /**
+   * Whether live preview detects poses on regions of interest, which only the default backend
+   * does. Crops then change size and position from frame to frame and alternate with whole frames,
+   * so the detector runs in single image mode rather than tracking across frames.
+   */
+  public static boolean isPoseRegionOfInterestUsed(Context context) {
+    return isPoseRegionOfInterestEnabled(context)
+        && getLivePreviewPoseBackend(context) == LIVE_PREVIEW_POSE_BACKEND_DEFAULT;
+  }
+
+  /**
+   * Returns which pose detector live preview runs, one of the {@code LIVE_PREVIEW_POSE_BACKEND_}
+   * constants.
+   */
+  public static int getLivePreviewPoseBackend(Context context) {
+    return getModeTypePreferenceValue(
+        context, R.string.pref_key_live_preview_pose_backend, LIVE_PREVIEW_POSE_BACKEND_DEFAULT);
+  }
+
   private PreferenceUtils() {}
 }
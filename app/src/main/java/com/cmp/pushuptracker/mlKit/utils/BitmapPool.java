@@ -0,0 +1,111 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import android.graphics.Bitmap;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of mutable bitmaps keyed by size and config, so camera frames drawn on the {@link
+ * GraphicOverlay} can be reused instead of allocated for every frame.
+ *
+ * <p>Bitmaps are handed out as reference counted {@link PooledBitmap}s and only go back to the pool
+ * once every holder has released them, so a bitmap still being drawn is never overwritten. Thread
+ * safe.
+ */
+public class BitmapPool {
+  // Free bitmaps, least recently released first.
+  private final Bitmap[] freeBitmaps;
+  private int numFreeBitmaps;
+
+  public BitmapPool(int maxPooledBitmaps) {
+    this.freeBitmaps = new Bitmap[maxPooledBitmaps];
+  }
+
+  /**
+   * Returns a mutable bitmap of the given size and config, reusing a pooled one if any. The caller
+   * holds the only reference. Pixels of a reused bitmap are left as they were.
+   */
+  public PooledBitmap acquire(int width, int height, Bitmap.Config config) {
+    Bitmap bitmap = null;
+    synchronized (this) {
+      for (int i = numFreeBitmaps - 1; i >= 0; i--) {
+        Bitmap candidate = freeBitmaps[i];
+        if (candidate.getWidth() == width
+            && candidate.getHeight() == height
+            && candidate.getConfig() == config) {
+          remove(i);
+          bitmap = candidate;
+          break;
+        }
+      }
+    }
+    if (bitmap == null) {
+      bitmap = Bitmap.createBitmap(width, height, config);
+    }
+    return new PooledBitmap(bitmap);
+  }
+
+  /** Recycles the free bitmaps. Bitmaps still held are pooled again once released. */
+  public synchronized void clear() {
+    while (numFreeBitmaps > 0) {
+      freeBitmaps[0].recycle();
+      remove(0);
+    }
+  }
+
+  /**
+   * Puts a bitmap nobody holds back in the pool. When the pool is full the least recently released
+   * bitmap is recycled, so sizes no longer in use age out.
+   */
+  private synchronized void recycle(Bitmap bitmap) {
+    if (freeBitmaps.length == 0) {
+      bitmap.recycle();
+      return;
+    }
+    if (numFreeBitmaps == freeBitmaps.length) {
+      freeBitmaps[0].recycle();
+      remove(0);
+    }
+    freeBitmaps[numFreeBitmaps++] = bitmap;
+  }
+
+  private void remove(int index) {
+    System.arraycopy(freeBitmaps, index + 1, freeBitmaps, index, numFreeBitmaps - index - 1);
+    freeBitmaps[--numFreeBitmaps] = null;
+  }
+
+  /**
+   * A bitmap from a {@link BitmapPool} with a reference count. It starts with one reference, owned
+   * by whoever acquired it; every {@link #retain} must be matched by a {@link #release}.
+   */
+  public final class PooledBitmap {
+    private final Bitmap bitmap;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private PooledBitmap(Bitmap bitmap) {
+      this.bitmap = bitmap;
+    }
+
+    /** Returns the bitmap. Only valid while the caller holds a reference. */
+    public Bitmap getBitmap() {
+      return bitmap;
+    }
+
+    /** Adds a reference, keeping the bitmap out of the pool until it is released. */
+    public PooledBitmap retain() {
+      Preconditions.checkState(refCount.getAndIncrement() > 0, "bitmap already released");
+      return this;
+    }
+
+    /** Drops a reference. The last one returns the bitmap to the pool. */
+    public void release() {
+      int remaining = refCount.decrementAndGet();
+      Preconditions.checkState(remaining >= 0, "bitmap released too many times");
+      if (remaining == 0) {
+        recycle(bitmap);
+      }
+    }
+  }
+}
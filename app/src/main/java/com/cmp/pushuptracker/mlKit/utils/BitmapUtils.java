@@ -18,11 +18,8 @@ package com.cmp.pushuptracker.mlKit.utils;
 
 import android.content.ContentResolver;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Rect;
-import android.graphics.YuvImage;
 import android.media.Image;
 import android.media.Image.Plane;
 import android.net.Uri;
@@ -36,7 +33,9 @@ import androidx.camera.core.ExperimentalGetImage;
 import androidx.camera.core.ImageProxy;
 import androidx.exifinterface.media.ExifInterface;
 
-import java.io.ByteArrayOutputStream;
+import com.cmp.pushuptracker.mlKit.utils.BitmapPool.PooledBitmap;
+import com.google.common.base.Preconditions;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -45,44 +44,171 @@ import java.nio.ByteBuffer;
 public class BitmapUtils {
   private static final String TAG = "BitmapUtils";
 
-  /** Converts NV21 format byte buffer to bitmap. */
-  @Nullable
-  public static Bitmap getBitmap(ByteBuffer data, FrameMetadata metadata) {
-    data.rewind();
-    byte[] imageInBuffer = new byte[data.limit()];
-    data.get(imageInBuffer, 0, imageInBuffer.length);
-    try {
-      YuvImage image =
-          new YuvImage(
-              imageInBuffer, ImageFormat.NV21, metadata.getWidth(), metadata.getHeight(), null);
-      ByteArrayOutputStream stream = new ByteArrayOutputStream();
-      image.compressToJpeg(new Rect(0, 0, metadata.getWidth(), metadata.getHeight()), 80, stream);
-
-      Bitmap bmp = BitmapFactory.decodeByteArray(stream.toByteArray(), 0, stream.size());
-
-      stream.close();
-      return rotateBitmap(bmp, metadata.getRotation(), false, false);
-    } catch (Exception e) {
-      Log.e("VisionProcessorBase", "Error: " + e.getMessage());
-    }
-    return null;
-  }
+  // NV21 frames are only needed while converting them, so a couple cover concurrent callers.
+  private static final ByteBufferPool nv21BufferPool = new ByteBufferPool(2);
+  // ARGB pixels of the last frame converted on each thread, grown to the largest frame seen.
+  private static final ThreadLocal<int[]> argbBuffer =
+      new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+          return new int[0];
+        }
+      };
 
   /** Converts a YUV_420_888 image from CameraX API to a bitmap. */
   @RequiresApi(VERSION_CODES.LOLLIPOP)
   @Nullable
   @ExperimentalGetImage
   public static Bitmap getBitmap(ImageProxy image) {
-    FrameMetadata frameMetadata =
-        new FrameMetadata.Builder()
-            .setWidth(image.getWidth())
-            .setHeight(image.getHeight())
-            .setRotation(image.getImageInfo().getRotationDegrees())
-            .build();
+    return getBitmap(
+        image.getImage(),
+        image.getImageInfo().getRotationDegrees(),
+        /* flipX= */ false,
+        /* reuse= */ null);
+  }
 
+  /**
+   * Converts a YUV_420_888 image from CameraX API to a bitmap taken from {@code pool}. The caller
+   * owns the returned reference and must release it.
+   */
+  @RequiresApi(VERSION_CODES.LOLLIPOP)
+  @ExperimentalGetImage
+  public static PooledBitmap getBitmap(ImageProxy image, BitmapPool pool) {
+    int rotationDegrees = image.getImageInfo().getRotationDegrees();
+    PooledBitmap pooledBitmap =
+        acquireRotated(pool, image.getWidth(), image.getHeight(), rotationDegrees);
+    try {
+      getBitmap(image.getImage(), rotationDegrees, /* flipX= */ false, pooledBitmap.getBitmap());
+    } catch (RuntimeException e) {
+      pooledBitmap.release();
+      throw e;
+    }
+    return pooledBitmap;
+  }
+
+  private static PooledBitmap acquireRotated(
+      BitmapPool pool, int width, int height, int rotationDegrees) {
+    return pool.acquire(
+        YuvToRgbConverter.getRotatedWidth(width, height, rotationDegrees),
+        YuvToRgbConverter.getRotatedHeight(width, height, rotationDegrees),
+        Bitmap.Config.ARGB_8888);
+  }
+
+  /**
+   * Converts a YUV_420_888 image to a bitmap, rotated clockwise by {@code rotationDegrees} and then
+   * mirrored horizontally if {@code flipX} is set.
+   *
+   * <p>The pixels are written into {@code reuse} when it's a mutable ARGB_8888 bitmap of the
+   * rotated size, otherwise into a new bitmap.
+   */
+  public static Bitmap getBitmap(
+      Image image, int rotationDegrees, boolean flipX, @Nullable Bitmap reuse) {
     ByteBuffer nv21Buffer =
-        yuv420ThreePlanesToNV21(image.getImage().getPlanes(), image.getWidth(), image.getHeight());
-    return getBitmap(nv21Buffer, frameMetadata);
+        nv21BufferPool.acquire(getNV21Size(image.getWidth(), image.getHeight()));
+    try {
+      yuv420ThreePlanesToNV21(
+          image.getPlanes(), image.getWidth(), image.getHeight(), nv21Buffer.array());
+      return getBitmap(
+          nv21Buffer.array(), image.getWidth(), image.getHeight(), rotationDegrees, flipX, reuse);
+    } finally {
+      nv21BufferPool.release(nv21Buffer);
+    }
+  }
+
+  /**
+   * Converts an NV21 frame to a bitmap with {@link YuvToRgbConverter}, without the JPEG round trip
+   * {@code YuvImage} would need. See {@link #getBitmap(Image, int, boolean, Bitmap)}.
+   */
+  private static Bitmap getBitmap(
+      byte[] nv21,
+      int width,
+      int height,
+      int rotationDegrees,
+      boolean flipX,
+      @Nullable Bitmap reuse) {
+    int outWidth = YuvToRgbConverter.getRotatedWidth(width, height, rotationDegrees);
+    int outHeight = YuvToRgbConverter.getRotatedHeight(width, height, rotationDegrees);
+    int[] argb = argbBuffer.get();
+    if (argb.length < width * height) {
+      argb = new int[width * height];
+      argbBuffer.set(argb);
+    }
+    YuvToRgbConverter.nv21ToArgb(nv21, width, height, rotationDegrees, flipX, argb);
+
+    Bitmap bitmap = reuse;
+    if (bitmap == null
+        || bitmap.isRecycled()
+        || !bitmap.isMutable()
+        || bitmap.getConfig() != Bitmap.Config.ARGB_8888
+        || bitmap.getWidth() != outWidth
+        || bitmap.getHeight() != outHeight) {
+      bitmap = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+    }
+    bitmap.setPixels(argb, 0, outWidth, 0, 0, outWidth, outHeight);
+    return bitmap;
+  }
+
+  /** Returns the size in bytes of an NV21 image. */
+  public static int getNV21Size(int width, int height) {
+    int imageSize = width * height;
+    return imageSize + 2 * (imageSize / 4);
+  }
+
+  /**
+   * Copies the {@code crop} part of a YUV_420_888 image into {@code out} as a smaller NV21 frame.
+   * The crop bounds must be even, so chroma samples line up, and {@code out} must hold at least
+   * {@link #getNV21Size} bytes for the crop size. The position of {@code out} is left alone.
+   */
+  public static void cropNV21(Image image, Rect crop, ByteBuffer out) {
+    checkCrop(crop, image.getWidth(), image.getHeight());
+    Plane[] planes = image.getPlanes();
+    ByteBuffer dst = out.duplicate();
+    dst.clear();
+    // The Y plane is never interleaved, so its rows are copied in bulk.
+    copyRows(
+        planes[0].getBuffer().duplicate(),
+        planes[0].getRowStride(),
+        crop.left,
+        crop.top,
+        crop.width(),
+        crop.height(),
+        dst);
+    // U and V share their strides, but may or may not be interleaved already.
+    ByteBuffer uBuffer = planes[1].getBuffer();
+    ByteBuffer vBuffer = planes[2].getBuffer();
+    int chromaRowStride = planes[1].getRowStride();
+    int chromaPixelStride = planes[1].getPixelStride();
+    for (int row = crop.top / 2; row < crop.bottom / 2; row++) {
+      for (int col = crop.left / 2; col < crop.right / 2; col++) {
+        int index = row * chromaRowStride + col * chromaPixelStride;
+        dst.put(vBuffer.get(index));
+        dst.put(uBuffer.get(index));
+      }
+    }
+  }
+
+  private static void checkCrop(Rect crop, int width, int height) {
+    Preconditions.checkArgument(
+        crop.left % 2 == 0 && crop.top % 2 == 0 && crop.width() % 2 == 0 && crop.height() % 2 == 0,
+        "Crop bounds must be even: %s",
+        crop);
+    Preconditions.checkArgument(crop.left >= 0 && crop.right <= width);
+    Preconditions.checkArgument(crop.top >= 0 && crop.bottom <= height);
+  }
+
+  private static void copyRows(
+      ByteBuffer src,
+      int rowStride,
+      int left,
+      int top,
+      int rowLength,
+      int rows,
+      ByteBuffer dst) {
+    for (int row = 0; row < rows; row++) {
+      int start = (top + row) * rowStride + left;
+      src.limit(start + rowLength).position(start);
+      dst.put(src);
+    }
   }
 
   /** Rotates a bitmap if it is converted from a bytebuffer. */
@@ -177,108 +303,21 @@ public class BitmapUtils {
   }
 
   /**
-   * Converts YUV_420_888 to NV21 bytebuffer.
-   *
-   * <p>The NV21 format consists of a single byte array containing the Y, U and V values. For an
-   * image of size S, the first S positions of the array contain all the Y values. The remaining
-   * positions contain interleaved V and U values. U and V are subsampled by a factor of 2 in both
-   * dimensions, so there are S/4 U values and S/4 V values. In summary, the NV21 array will contain
-   * S Y values followed by S/4 VU values: YYYYYYYYYYYYYY(...)YVUVUVUVU(...)VU
-   *
-   * <p>YUV_420_888 is a generic format that can describe any YUV image where U and V are subsampled
-   * by a factor of 2 in both dimensions. {@link Image#getPlanes} returns an array with the Y, U and
-   * V planes. The Y plane is guaranteed not to be interleaved, so we can just copy its values into
-   * the first part of the NV21 array. The U and V planes may already have the representation in the
-   * NV21 format. This happens if the planes share the same buffer, the V buffer is one position
-   * before the U buffer and the planes have a pixelStride of 2. If this is case, we can just copy
-   * them to the NV21 array.
-   */
-  private static ByteBuffer yuv420ThreePlanesToNV21(
-      Plane[] yuv420888planes, int width, int height) {
-    int imageSize = width * height;
-    byte[] out = new byte[imageSize + 2 * (imageSize / 4)];
-
-    if (areUVPlanesNV21(yuv420888planes, width, height)) {
-      // Copy the Y values.
-      yuv420888planes[0].getBuffer().get(out, 0, imageSize);
-
-      ByteBuffer uBuffer = yuv420888planes[1].getBuffer();
-      ByteBuffer vBuffer = yuv420888planes[2].getBuffer();
-      // Get the first V value from the V buffer, since the U buffer does not contain it.
-      vBuffer.get(out, imageSize, 1);
-      // Copy the first U value and the remaining VU values from the U buffer.
-      uBuffer.get(out, imageSize + 1, 2 * imageSize / 4 - 1);
-    } else {
-      // Fallback to copying the UV values one by one, which is slower but also works.
-      // Unpack Y.
-      unpackPlane(yuv420888planes[0], width, height, out, 0, 1);
-      // Unpack U.
-      unpackPlane(yuv420888planes[1], width, height, out, imageSize + 1, 2);
-      // Unpack V.
-      unpackPlane(yuv420888planes[2], width, height, out, imageSize, 2);
-    }
-
-    return ByteBuffer.wrap(out);
-  }
-
-  /** Checks if the UV plane buffers of a YUV_420_888 image are in the NV21 format. */
-  private static boolean areUVPlanesNV21(Plane[] planes, int width, int height) {
-    int imageSize = width * height;
-
-    ByteBuffer uBuffer = planes[1].getBuffer();
-    ByteBuffer vBuffer = planes[2].getBuffer();
-
-    // Backup buffer properties.
-    int vBufferPosition = vBuffer.position();
-    int uBufferLimit = uBuffer.limit();
-
-    // Advance the V buffer by 1 byte, since the U buffer will not contain the first V value.
-    vBuffer.position(vBufferPosition + 1);
-    // Chop off the last byte of the U buffer, since the V buffer will not contain the last U value.
-    uBuffer.limit(uBufferLimit - 1);
-
-    // Check that the buffers are equal and have the expected number of elements.
-    boolean areNV21 =
-        (vBuffer.remaining() == (2 * imageSize / 4 - 2)) && (vBuffer.compareTo(uBuffer) == 0);
-
-    // Restore buffers to their initial state.
-    vBuffer.position(vBufferPosition);
-    uBuffer.limit(uBufferLimit);
-
-    return areNV21;
-  }
-
-  /**
-   * Unpack an image plane into a byte array.
-   *
-   * <p>The input plane data will be copied in 'out', starting at 'offset' and every pixel will be
-   * spaced by 'pixelStride'. Note that there is no row padding on the output.
+   * Converts YUV_420_888 to NV21, see {@link YuvToRgbConverter#yuv420ToNv21}. The result is written
+   * to {@code out}, which must hold at least {@link #getNV21Size} bytes.
    */
-  private static void unpackPlane(
-      Plane plane, int width, int height, byte[] out, int offset, int pixelStride) {
-    ByteBuffer buffer = plane.getBuffer();
-    buffer.rewind();
-
-    // Compute the size of the current plane.
-    // We assume that it has the aspect ratio as the original image.
-    int numRow = (buffer.limit() + plane.getRowStride() - 1) / plane.getRowStride();
-    if (numRow == 0) {
-      return;
-    }
-    int scaleFactor = height / numRow;
-    int numCol = width / scaleFactor;
-
-    // Extract the data in the output buffer.
-    int outputPos = offset;
-    int rowStart = 0;
-    for (int row = 0; row < numRow; row++) {
-      int inputPos = rowStart;
-      for (int col = 0; col < numCol; col++) {
-        out[outputPos] = buffer.get(inputPos);
-        outputPos += pixelStride;
-        inputPos += plane.getPixelStride();
-      }
-      rowStart += plane.getRowStride();
-    }
+  private static void yuv420ThreePlanesToNV21(
+      Plane[] yuv420888planes, int width, int height, byte[] out) {
+    YuvToRgbConverter.yuv420ToNv21(
+        yuv420888planes[0].getBuffer(),
+        yuv420888planes[0].getRowStride(),
+        yuv420888planes[0].getPixelStride(),
+        yuv420888planes[1].getBuffer(),
+        yuv420888planes[2].getBuffer(),
+        yuv420888planes[1].getRowStride(),
+        yuv420888planes[1].getPixelStride(),
+        width,
+        height,
+        out);
   }
 }
@@ -0,0 +1,53 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A small pool of byte buffers keyed by capacity, so per-frame image buffers can be reused instead
+ * of allocated for every camera frame.
+ *
+ * <p>Buffers are array backed, so callers that need a {@code byte[]}, such as {@link
+ * android.graphics.YuvImage}, can use {@link ByteBuffer#array()} without copying. Thread safe.
+ */
+public class ByteBufferPool {
+  // Free buffers, least recently released first.
+  private final ByteBuffer[] freeBuffers;
+  private int numFreeBuffers;
+
+  public ByteBufferPool(int maxPooledBuffers) {
+    this.freeBuffers = new ByteBuffer[maxPooledBuffers];
+  }
+
+  /** Returns a cleared buffer of exactly {@code capacity} bytes, reusing a pooled one if any. */
+  public synchronized ByteBuffer acquire(int capacity) {
+    for (int i = numFreeBuffers - 1; i >= 0; i--) {
+      ByteBuffer buffer = freeBuffers[i];
+      if (buffer.capacity() == capacity) {
+        remove(i);
+        buffer.clear();
+        return buffer;
+      }
+    }
+    return ByteBuffer.allocate(capacity);
+  }
+
+  /**
+   * Returns a buffer from {@link #acquire} to the pool. The caller must not use it afterwards. When
+   * the pool is full the least recently released buffer is dropped, so sizes no longer in use age
+   * out.
+   */
+  public synchronized void release(ByteBuffer buffer) {
+    if (freeBuffers.length == 0) {
+      return;
+    }
+    if (numFreeBuffers == freeBuffers.length) {
+      remove(0);
+    }
+    freeBuffers[numFreeBuffers++] = buffer;
+  }
+
+  private void remove(int index) {
+    System.arraycopy(freeBuffers, index + 1, freeBuffers, index, numFreeBuffers - index - 1);
+    freeBuffers[--numFreeBuffers] = null;
+  }
+}
@@ -0,0 +1,18 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import androidx.camera.core.ImageProxy;
+
+import com.google.mlkit.common.MlKitException;
+
+/**
+ * Processes live camera frames for {@link CameraXSource}. Processors that also handle still
+ * images implement {@link VisionImageProcessor}.
+ */
+public interface CameraFrameProcessor {
+
+  /** Processes ImageProxy image data, e.g. used for CameraX live preview case. */
+  void processImageProxy(ImageProxy image, GraphicOverlay graphicOverlay) throws MlKitException;
+
+  /** Stops the underlying machine learning model and release resources. */
+  void stop();
+}
@@ -19,19 +19,38 @@ package com.cmp.pushuptracker.mlKit.utils;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 
+import androidx.annotation.Nullable;
+
+import com.cmp.pushuptracker.mlKit.utils.BitmapPool.PooledBitmap;
 
 /** Draw camera image to background. */
 public class CameraImageGraphic extends GraphicOverlay.Graphic {
 
   private final Bitmap bitmap;
+  @Nullable private final PooledBitmap pooledBitmap;
 
   public CameraImageGraphic(GraphicOverlay overlay, Bitmap bitmap) {
     super(overlay);
     this.bitmap = bitmap;
+    this.pooledBitmap = null;
+  }
+
+  /** Holds a reference to {@code pooledBitmap} until the graphic is removed from the overlay. */
+  public CameraImageGraphic(GraphicOverlay overlay, PooledBitmap pooledBitmap) {
+    super(overlay);
+    this.pooledBitmap = pooledBitmap.retain();
+    this.bitmap = pooledBitmap.getBitmap();
   }
 
   @Override
   public void draw(Canvas canvas) {
     canvas.drawBitmap(bitmap, getTransformationMatrix(), null);
   }
+
+  @Override
+  public void release() {
+    if (pooledBitmap != null) {
+      pooledBitmap.release();
+    }
+  }
 }
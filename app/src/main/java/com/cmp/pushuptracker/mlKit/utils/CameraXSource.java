@@ -0,0 +1,246 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.common.MlKitException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the camera through CameraX: a preview shown in a {@link PreviewView}, and an analysis use
+ * case whose frames go to a {@link CameraFrameProcessor}, or any other analyzer.
+ *
+ * <p>Frames are analyzed on a dedicated thread and never on the main thread. Analysis keeps only
+ * the latest frame, so while the processor holds on to one, newer frames replace each other
+ * instead of queueing up. Configuration is applied on the next {@link #start}, and all methods
+ * other than the analyzer itself are meant to be called on the main thread, as CameraX requires
+ * for binding.
+ */
+public class CameraXSource {
+  public static final int CAMERA_FACING_BACK = CameraSelector.LENS_FACING_BACK;
+  public static final int CAMERA_FACING_FRONT = CameraSelector.LENS_FACING_FRONT;
+
+  private static final String TAG = "CameraXSource";
+
+  private final Context context;
+  private final LifecycleOwner lifecycleOwner;
+  @Nullable private final GraphicOverlay graphicOverlay;
+  private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+
+  // Also read on the analysis thread.
+  private volatile int facing = CAMERA_FACING_BACK;
+  @Nullable private Size targetResolution;
+  private int outputImageFormat = ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888;
+
+  @Nullable private ProcessCameraProvider cameraProvider;
+  @Nullable private PreviewView previewView;
+  @Nullable private Preview previewUseCase;
+  @Nullable private ImageAnalysis analysisUseCase;
+
+  // Set on the main thread, used on the analysis thread.
+  @Nullable private volatile ImageAnalysis.Analyzer analyzer;
+  @Nullable private volatile CameraFrameProcessor frameProcessor;
+  // Whether the overlay still needs the size of the frames, which is only known once they arrive.
+  private volatile boolean needUpdateGraphicOverlayImageSourceInfo;
+
+  /**
+   * Creates a camera source bound to {@code lifecycleOwner}. {@code graphicOverlay} is required
+   * for {@link #setMachineLearningFrameProcessor}.
+   */
+  public CameraXSource(
+      Context context, LifecycleOwner lifecycleOwner, @Nullable GraphicOverlay graphicOverlay) {
+    this.context = context.getApplicationContext();
+    this.lifecycleOwner = lifecycleOwner;
+    this.graphicOverlay = graphicOverlay;
+  }
+
+  /** Sets the camera to use, {@link #CAMERA_FACING_BACK} or {@link #CAMERA_FACING_FRONT}. */
+  public void setFacing(int facing) {
+    Preconditions.checkArgument(facing == CAMERA_FACING_BACK || facing == CAMERA_FACING_FRONT);
+    this.facing = facing;
+  }
+
+  public int getCameraFacing() {
+    return facing;
+  }
+
+  /**
+   * Sets the size analyzed frames should have. CameraX picks the closest size the camera
+   * supports, preferring larger ones. Null leaves the choice to CameraX.
+   */
+  public void setTargetResolution(@Nullable Size targetResolution) {
+    this.targetResolution = targetResolution;
+  }
+
+  /**
+   * Sets the format of analyzed frames, {@link ImageAnalysis#OUTPUT_IMAGE_FORMAT_YUV_420_888}, the
+   * default, or {@link ImageAnalysis#OUTPUT_IMAGE_FORMAT_RGBA_8888}.
+   */
+  public void setOutputImageFormat(int outputImageFormat) {
+    Preconditions.checkArgument(
+        outputImageFormat == ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888
+            || outputImageFormat == ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888);
+    this.outputImageFormat = outputImageFormat;
+  }
+
+  /**
+   * Sends frames to {@code processor}, replacing any analyzer. The previous processor, if any, is
+   * stopped.
+   */
+  public void setMachineLearningFrameProcessor(CameraFrameProcessor processor) {
+    Preconditions.checkState(graphicOverlay != null, "Processors need a graphic overlay");
+    CameraFrameProcessor previousProcessor = frameProcessor;
+    frameProcessor = processor;
+    analyzer = null;
+    needUpdateGraphicOverlayImageSourceInfo = true;
+    if (previousProcessor != null && previousProcessor != processor) {
+      previousProcessor.stop();
+    }
+  }
+
+  /**
+   * Sends frames to {@code analyzer}, on the analysis thread, replacing any processor. The
+   * analyzer must close each frame.
+   */
+  public void setFrameAnalyzer(ImageAnalysis.Analyzer analyzer) {
+    CameraFrameProcessor previousProcessor = frameProcessor;
+    frameProcessor = null;
+    this.analyzer = analyzer;
+    if (previousProcessor != null) {
+      previousProcessor.stop();
+    }
+  }
+
+  /** Binds the preview, shown in {@code previewView}, and analysis to the lifecycle. */
+  @MainThread
+  public void start(PreviewView previewView) {
+    this.previewView = previewView;
+    if (graphicOverlay != null) {
+      graphicOverlay.clear();
+    }
+    if (cameraProvider != null) {
+      bindUseCases();
+      return;
+    }
+    ListenableFuture<ProcessCameraProvider> cameraProviderFuture =
+        ProcessCameraProvider.getInstance(context);
+    cameraProviderFuture.addListener(
+        () -> {
+          try {
+            cameraProvider = cameraProviderFuture.get();
+          } catch (ExecutionException | InterruptedException e) {
+            Log.e(TAG, "Unable to get the camera provider.", e);
+            return;
+          }
+          // Stopped while waiting for the provider.
+          if (this.previewView != null) {
+            bindUseCases();
+          }
+        },
+        ContextCompat.getMainExecutor(context));
+  }
+
+  /** Unbinds the camera. Frames already delivered may still be analyzed. */
+  @MainThread
+  public void stop() {
+    previewView = null;
+    if (cameraProvider != null) {
+      cameraProvider.unbindAll();
+    }
+    previewUseCase = null;
+    analysisUseCase = null;
+  }
+
+  /** Stops the camera and the frame processor, and frees the analysis thread. */
+  @MainThread
+  public void release() {
+    stop();
+    CameraFrameProcessor processor = frameProcessor;
+    frameProcessor = null;
+    analyzer = null;
+    if (processor != null) {
+      processor.stop();
+    }
+    analysisExecutor.shutdown();
+  }
+
+  private void bindUseCases() {
+    cameraProvider.unbindAll();
+    CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(facing).build();
+    ResolutionSelector.Builder resolutionSelector = new ResolutionSelector.Builder();
+    if (targetResolution != null) {
+      resolutionSelector.setResolutionStrategy(
+          new ResolutionStrategy(
+              targetResolution, ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER));
+    }
+
+    previewUseCase = new Preview.Builder().build();
+    previewUseCase.setSurfaceProvider(previewView.getSurfaceProvider());
+
+    analysisUseCase =
+        new ImageAnalysis.Builder()
+            .setResolutionSelector(resolutionSelector.build())
+            .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+            .setOutputImageFormat(outputImageFormat)
+            .build();
+    needUpdateGraphicOverlayImageSourceInfo = true;
+    analysisUseCase.setAnalyzer(analysisExecutor, this::analyze);
+
+    try {
+      cameraProvider.bindToLifecycle(
+          lifecycleOwner, cameraSelector, previewUseCase, analysisUseCase);
+    } catch (RuntimeException e) {
+      Log.e(TAG, "Unable to bind the camera.", e);
+    }
+  }
+
+  /** Runs on the analysis thread. */
+  private void analyze(ImageProxy image) {
+    ImageAnalysis.Analyzer analyzer = this.analyzer;
+    if (analyzer != null) {
+      analyzer.analyze(image);
+      return;
+    }
+    CameraFrameProcessor processor = frameProcessor;
+    if (processor == null) {
+      image.close();
+      return;
+    }
+
+    if (needUpdateGraphicOverlayImageSourceInfo) {
+      boolean isImageFlipped = facing == CAMERA_FACING_FRONT;
+      int rotationDegrees = image.getImageInfo().getRotationDegrees();
+      if (rotationDegrees == 0 || rotationDegrees == 180) {
+        graphicOverlay.setImageSourceInfo(image.getWidth(), image.getHeight(), isImageFlipped);
+      } else {
+        graphicOverlay.setImageSourceInfo(image.getHeight(), image.getWidth(), isImageFlipped);
+      }
+      needUpdateGraphicOverlayImageSourceInfo = false;
+    }
+    try {
+      processor.processImageProxy(image, graphicOverlay);
+    } catch (MlKitException e) {
+      Log.e(TAG, "Failed to process image.", e);
+      image.close();
+    }
+  }
+}
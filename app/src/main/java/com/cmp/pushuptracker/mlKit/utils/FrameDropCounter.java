@@ -0,0 +1,60 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts camera frames that never got a detection result, by why they were dropped, so frame rate
+ * problems can be told apart from a still scene or deliberate throttling. Thread safe.
+ */
+public class FrameDropCounter {
+
+  /** Why a frame was dropped. */
+  public enum Reason {
+    /** The scene hasn't changed since the last analyzed frame, see {@link MotionGate}. */
+    NO_MOTION,
+    /** Analysis is paced down to spare the device, see {@link FrameRateGovernor}. */
+    THROTTLED,
+    /** The detector was still working on an earlier frame. */
+    BUSY,
+    /** The detector was closed or failed, or the frame had no image. */
+    UNAVAILABLE
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(Reason.values().length);
+
+  public void count(Reason reason) {
+    counts.incrementAndGet(reason.ordinal());
+  }
+
+  /** Returns the number of frames dropped for {@code reason} since creation or the last reset. */
+  public long get(Reason reason) {
+    return counts.get(reason.ordinal());
+  }
+
+  public long getTotal() {
+    long total = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Reason reason : Reason.values()) {
+      if (builder.length() > 0) {
+        builder.append(", ");
+      }
+      builder.append(String.format(Locale.US, "%s: %d", reason, get(reason)));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,81 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import androidx.camera.core.ImageProxy;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides which camera frames go on to a detector, the same way for every detector: frames of a
+ * still scene are skipped first, see {@link MotionGate}, then frames the {@link FrameRateGovernor}
+ * paces out and, for detectors that take one frame at a time, frames arriving while the detector
+ * is busy. Frames that don't get through are closed and counted in a {@link FrameDropCounter}.
+ * Thread safe.
+ */
+public class FrameGate {
+  private final MotionGate motionGate = new MotionGate();
+  private final FrameRateGovernor frameRateGovernor;
+  private final FrameDropCounter frameDrops;
+  private final boolean oneFrameAtATime;
+  // Set from admitting a frame until onFrameDone, if only one frame may be in the detector.
+  private final AtomicBoolean busy = new AtomicBoolean(false);
+
+  /**
+   * @param oneFrameAtATime whether a frame admitted keeps out the next ones until {@link
+   *     #onFrameDone}, for detectors that don't queue frames themselves
+   */
+  public FrameGate(
+      FrameRateGovernor frameRateGovernor, FrameDropCounter frameDrops, boolean oneFrameAtATime) {
+    this.frameRateGovernor = frameRateGovernor;
+    this.frameDrops = frameDrops;
+    this.oneFrameAtATime = oneFrameAtATime;
+  }
+
+  /**
+   * Returns whether {@code image} should be analyzed. If not, it's closed and counted as dropped.
+   * Only an admitted frame restarts the motion and frame rate intervals, so a frame dropped for
+   * being busy doesn't hold back the next one.
+   */
+  public synchronized boolean admit(ImageProxy image) {
+    ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+    if (!motionGate.isWorthDetecting(
+        plane.getBuffer(),
+        image.getWidth(),
+        image.getHeight(),
+        plane.getRowStride(),
+        plane.getPixelStride())) {
+      drop(image, FrameDropCounter.Reason.NO_MOTION);
+      return false;
+    }
+    if (!frameRateGovernor.isFrameDue()) {
+      drop(image, FrameDropCounter.Reason.THROTTLED);
+      return false;
+    }
+    if (oneFrameAtATime && !busy.compareAndSet(false, true)) {
+      frameRateGovernor.onFrameDropped();
+      drop(image, FrameDropCounter.Reason.BUSY);
+      return false;
+    }
+    motionGate.onDetecting();
+    frameRateGovernor.onFrameAdmitted();
+    return true;
+  }
+
+  /** Lets the next frame in once the detector is done with the last admitted one, or gave up. */
+  public void onFrameDone() {
+    busy.set(false);
+  }
+
+  /**
+   * Drops an admitted frame the detector can't take after all, e.g. because it was closed, and
+   * lets the next frame in.
+   */
+  public void dropUnavailable(ImageProxy image) {
+    onFrameDone();
+    drop(image, FrameDropCounter.Reason.UNAVAILABLE);
+  }
+
+  private void drop(ImageProxy image, FrameDropCounter.Reason reason) {
+    image.close();
+    frameDrops.count(reason);
+  }
+}
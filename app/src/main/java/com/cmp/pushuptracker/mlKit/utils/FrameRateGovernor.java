@@ -0,0 +1,207 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks how often camera frames are analyzed, and whether the accurate pose model may be used, from
+ * how well the device keeps up: detector latency, frames dropped on the way to the detector and
+ * the rise in device temperature.
+ *
+ * <p>Works through a ladder of levels, from the accurate model at the full camera rate down to the
+ * fast model at a few frames per second. It steps down once the device has been under pressure for
+ * a few seconds, but only steps back up after a much longer stretch with headroom, and the two use
+ * separate thresholds, so it doesn't flip back and forth around either. Thread safe.
+ */
+public class FrameRateGovernor {
+  private static final String TAG = "FrameRateGovernor";
+
+  // Minimum time between analyzed frames at each level, from the least to the most throttled.
+  private static final long[] FRAME_INTERVALS_MS = {0, 0, 66, 100, 150};
+  // Levels below this one use the accurate model, if it is allowed at all.
+  private static final int FIRST_FAST_MODEL_LEVEL = 1;
+
+  // Average detector latency above which the device is under pressure, and below which it has
+  // headroom. Thermal throttling shows up here first.
+  private static final long HIGH_LATENCY_MS = 120;
+  private static final long LOW_LATENCY_MS = 60;
+  // Same for the fraction of frames dropped before reaching the detector.
+  private static final float HIGH_DROP_RATIO = 0.3f;
+  private static final float LOW_DROP_RATIO = 0.1f;
+  // Same for the temperature rise since the first reading. Sensors differ too much between devices
+  // for absolute values to mean much, see TemperatureMonitor#getMaxTemperatureRiseCelsius.
+  private static final float HIGH_TEMPERATURE_RISE_C = 8f;
+  private static final float LOW_TEMPERATURE_RISE_C = 5f;
+
+  // Window over which latency and drops are averaged before each decision.
+  private static final long WINDOW_MS = 1000;
+  // How long pressure must last to step down, and headroom to step up.
+  private static final long STEP_DOWN_AFTER_MS = 3000;
+  private static final long STEP_UP_AFTER_MS = 15000;
+
+  private final LongSupplier clock;
+
+  private boolean accurateModelAllowed;
+  private int level = FIRST_FAST_MODEL_LEVEL;
+  private long lastFrameMs = Long.MIN_VALUE;
+
+  // Measurements in the current window.
+  private long windowStartMs;
+  private int windowFrames;
+  private long windowLatencyMs;
+  private int windowDrops;
+
+  private float temperatureRiseC;
+  // Read once per window, if set, instead of being fed through onTemperatureRise.
+  @Nullable private TemperatureMonitor temperatureMonitor;
+
+  // Since when the device has been under pressure or had headroom, or -1.
+  private long pressureSinceMs = -1;
+  private long headroomSinceMs = -1;
+
+  public FrameRateGovernor() {
+    this(SystemClock::elapsedRealtime);
+  }
+
+  public FrameRateGovernor(LongSupplier clock) {
+    this.clock = clock;
+    this.windowStartMs = clock.getAsLong();
+  }
+
+  /**
+   * Sets whether the accurate model may be used, i.e. whether the user picked it. The governor
+   * starts with it if so, and never uses it otherwise.
+   */
+  public synchronized void setAccurateModelAllowed(boolean accurateModelAllowed) {
+    this.accurateModelAllowed = accurateModelAllowed;
+    level = accurateModelAllowed ? 0 : Math.max(level, FIRST_FAST_MODEL_LEVEL);
+  }
+
+  /** Returns whether the detector should use the accurate model rather than the fast one. */
+  public synchronized boolean isAccurateModelEnabled() {
+    return accurateModelAllowed && level < FIRST_FAST_MODEL_LEVEL;
+  }
+
+  /** Returns the minimum time between analyzed frames. */
+  public synchronized long getFrameIntervalMs() {
+    return FRAME_INTERVALS_MS[level];
+  }
+
+  /**
+   * Returns whether a frame arriving now is due, given the current frame interval. A frame skipped
+   * this way doesn't count as dropped. The interval only restarts at {@link #onFrameAdmitted}.
+   */
+  public synchronized boolean isFrameDue() {
+    return lastFrameMs == Long.MIN_VALUE
+        || clock.getAsLong() - lastFrameMs >= FRAME_INTERVALS_MS[level];
+  }
+
+  /** Records that a frame went on to the detector, which starts the next frame interval. */
+  public synchronized void onFrameAdmitted() {
+    lastFrameMs = clock.getAsLong();
+  }
+
+  /** Records the detector latency of an analyzed frame. */
+  public synchronized void onFrameProcessed(long detectorLatencyMs) {
+    windowFrames++;
+    windowLatencyMs += detectorLatencyMs;
+    maybeUpdateLevel();
+  }
+
+  /** Records a frame dropped because a newer one replaced it before it was analyzed. */
+  public synchronized void onFrameDropped() {
+    windowDrops++;
+    maybeUpdateLevel();
+  }
+
+  /**
+   * Records how far the device temperature has risen since monitoring started. NaN, i.e. no
+   * reading, is ignored.
+   */
+  public synchronized void onTemperatureRise(float celsius) {
+    if (!Float.isNaN(celsius)) {
+      temperatureRiseC = celsius;
+    }
+  }
+
+  /**
+   * Sets a monitor to read the temperature rise from before each decision, or null to go by {@link
+   * #onTemperatureRise} alone. The caller still owns the monitor and stops it.
+   */
+  public synchronized void setTemperatureMonitor(@Nullable TemperatureMonitor temperatureMonitor) {
+    this.temperatureMonitor = temperatureMonitor;
+  }
+
+  private void maybeUpdateLevel() {
+    long now = clock.getAsLong();
+    if (now - windowStartMs < WINDOW_MS) {
+      return;
+    }
+    if (temperatureMonitor != null) {
+      onTemperatureRise(temperatureMonitor.getMaxTemperatureRiseCelsius());
+    }
+
+    float dropRatio =
+        windowFrames + windowDrops == 0 ? 0f : (float) windowDrops / (windowFrames + windowDrops);
+    // Without analyzed frames there is no latency to go by.
+    long averageLatencyMs = windowFrames == 0 ? 0 : windowLatencyMs / windowFrames;
+
+    boolean underPressure =
+        averageLatencyMs > HIGH_LATENCY_MS
+            || dropRatio > HIGH_DROP_RATIO
+            || temperatureRiseC > HIGH_TEMPERATURE_RISE_C;
+    boolean hasHeadroom =
+        averageLatencyMs < LOW_LATENCY_MS
+            && dropRatio < LOW_DROP_RATIO
+            && temperatureRiseC < LOW_TEMPERATURE_RISE_C;
+
+    if (underPressure) {
+      headroomSinceMs = -1;
+      if (pressureSinceMs < 0) {
+        pressureSinceMs = now;
+      } else if (now - pressureSinceMs >= STEP_DOWN_AFTER_MS
+          && level < FRAME_INTERVALS_MS.length - 1) {
+        setLevel(level + 1, averageLatencyMs, dropRatio, temperatureRiseC);
+        pressureSinceMs = now;
+      }
+    } else if (hasHeadroom) {
+      pressureSinceMs = -1;
+      int minLevel = accurateModelAllowed ? 0 : FIRST_FAST_MODEL_LEVEL;
+      if (headroomSinceMs < 0) {
+        headroomSinceMs = now;
+      } else if (now - headroomSinceMs >= STEP_UP_AFTER_MS && level > minLevel) {
+        setLevel(level - 1, averageLatencyMs, dropRatio, temperatureRiseC);
+        headroomSinceMs = now;
+      }
+    } else {
+      pressureSinceMs = -1;
+      headroomSinceMs = -1;
+    }
+
+    windowStartMs = now;
+    windowFrames = 0;
+    windowLatencyMs = 0;
+    windowDrops = 0;
+  }
+
+  private void setLevel(
+      int level, long averageLatencyMs, float dropRatio, float temperatureRiseC) {
+    this.level = level;
+    Log.d(
+        TAG,
+        String.format(
+            Locale.US,
+            "Level %d: %d ms frame interval, %s model (latency %d ms, %.0f%% dropped, +%.1fC)",
+            level,
+            FRAME_INTERVALS_MS[level],
+            isAccurateModelEnabled() ? "accurate" : "fast",
+            averageLatencyMs,
+            dropRatio * 100,
+            temperatureRiseC));
+  }
+}
@@ -0,0 +1,182 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * One stage of a frame pipeline. Runs one frame at a time, with a single slot for the frame after
+ * it: a frame submitted while the slot is taken replaces the one waiting there, whose task is
+ * canceled. A slow stage then only ever holds back the latest frame instead of a growing backlog.
+ *
+ * <p>Also keeps how long the stage was busy and how many frames it dropped, so the occupancy of
+ * each stage can be reported. Thread safe.
+ */
+public class FrameStage {
+  private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+  private final String name;
+  private final Executor executor;
+
+  @GuardedBy("this")
+  private boolean busy;
+  @GuardedBy("this")
+  @Nullable
+  private Frame<?> waitingFrame;
+
+  @GuardedBy("this")
+  private long statsStartNanos = System.nanoTime();
+  @GuardedBy("this")
+  private long busyStartNanos;
+  @GuardedBy("this")
+  private long busyNanos;
+  @GuardedBy("this")
+  private int processedFrames;
+  @GuardedBy("this")
+  private int droppedFrames;
+
+  /** Creates a stage that starts the work of each frame on {@code executor}. */
+  public FrameStage(String name, Executor executor) {
+    this.name = name;
+    this.executor = executor;
+  }
+
+  /**
+   * Runs {@code work} once the frames ahead of it are done. The stage counts as busy until the
+   * task returned by {@code work} completes. The returned task completes the same way, or is
+   * canceled if a newer frame took its place before it started.
+   */
+  public <T> Task<T> submit(Callable<Task<T>> work) {
+    Frame<T> frame = new Frame<>(work);
+    Frame<?> droppedFrame = null;
+    boolean startNow = false;
+    synchronized (this) {
+      if (busy) {
+        droppedFrame = waitingFrame;
+        waitingFrame = frame;
+        if (droppedFrame != null) {
+          droppedFrames++;
+        }
+      } else {
+        busy = true;
+        busyStartNanos = 0;
+        startNow = true;
+      }
+    }
+    if (droppedFrame != null) {
+      droppedFrame.cancellation.cancel();
+    }
+    if (startNow) {
+      start(frame);
+    }
+    return frame.result.getTask();
+  }
+
+  /** Returns the fraction of time since the last {@link #resetStats} the stage was busy. */
+  public synchronized float getOccupancy() {
+    long now = System.nanoTime();
+    long elapsedNanos = now - statsStartNanos;
+    if (elapsedNanos <= 0) {
+      return 0f;
+    }
+    long busyNanos = this.busyNanos;
+    if (busy && busyStartNanos != 0) {
+      busyNanos += now - Math.max(busyStartNanos, statsStartNanos);
+    }
+    return Math.min(1f, (float) busyNanos / elapsedNanos);
+  }
+
+  /** Returns the number of frames that ran since the last {@link #resetStats}. */
+  public synchronized int getProcessedFrames() {
+    return processedFrames;
+  }
+
+  /** Returns the number of frames replaced while waiting since the last {@link #resetStats}. */
+  public synchronized int getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  public synchronized void resetStats() {
+    statsStartNanos = System.nanoTime();
+    busyNanos = 0;
+    processedFrames = 0;
+    droppedFrames = 0;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    synchronized (this) {
+      return String.format(
+          Locale.US,
+          "%s: %.0f%% busy, %d frames, %d dropped",
+          name,
+          getOccupancy() * 100,
+          processedFrames,
+          droppedFrames);
+    }
+  }
+
+  private <T> void start(Frame<T> frame) {
+    // Busy time only counts from when the work starts, not while it is queued on the executor.
+    executor.execute(
+        () -> {
+          synchronized (this) {
+            busyStartNanos = System.nanoTime();
+          }
+          Task<T> task;
+          try {
+            task = frame.work.call();
+          } catch (Exception e) {
+            task = Tasks.forException(e);
+          }
+          task.addOnCompleteListener(DIRECT_EXECUTOR, completed -> finish(frame, completed));
+        });
+  }
+
+  private <T> void finish(Frame<T> frame, Task<T> completed) {
+    // Frees the stage before reporting the result, so a listener can submit the next frame
+    // straight away.
+    Frame<?> next;
+    synchronized (this) {
+      long now = System.nanoTime();
+      busyNanos += now - Math.max(busyStartNanos, statsStartNanos);
+      processedFrames++;
+      next = waitingFrame;
+      waitingFrame = null;
+      busyStartNanos = 0;
+      busy = next != null;
+    }
+    if (next != null) {
+      start(next);
+    }
+
+    if (completed.isCanceled()) {
+      frame.cancellation.cancel();
+    } else if (completed.isSuccessful()) {
+      frame.result.trySetResult(completed.getResult());
+    } else {
+      frame.result.trySetException(completed.getException());
+    }
+  }
+
+  /** A frame's work and the task reporting its result. */
+  private static class Frame<T> {
+    final Callable<Task<T>> work;
+    final CancellationTokenSource cancellation = new CancellationTokenSource();
+    final TaskCompletionSource<T> result = new TaskCompletionSource<>(cancellation.getToken());
+
+    Frame(Callable<Task<T>> work) {
+      this.work = work;
+    }
+  }
+}
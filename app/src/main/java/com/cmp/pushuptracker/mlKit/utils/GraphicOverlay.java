@@ -98,6 +98,12 @@ public class GraphicOverlay extends View {
      */
     public abstract void draw(Canvas canvas);
 
+    /**
+     * Called once the graphic is removed from the overlay, after its last {@link #draw}, to release
+     * what it holds. Does nothing by default.
+     */
+    public void release() {}
+
     protected void drawRect(
         Canvas canvas, float left, float top, float right, float bottom, Paint paint) {
       canvas.drawRect(left, top, right, bottom, paint);
@@ -221,11 +227,27 @@ public class GraphicOverlay extends View {
   /** Removes all graphics from the overlay. */
   public void clear() {
     synchronized (lock) {
+      // Drawing holds the lock too, so none of these graphics is being drawn.
+      for (Graphic graphic : graphics) {
+        graphic.release();
+      }
       graphics.clear();
     }
     postInvalidate();
   }
 
+  /**
+   * Runs {@code update} while holding the lock {@link #onDraw} takes, so the overlay is never drawn
+   * with only part of the changes, e.g. cleared but not yet refilled. Invalidates once afterwards.
+   * Can be called from any thread.
+   */
+  public void update(Runnable update) {
+    synchronized (lock) {
+      update.run();
+    }
+    postInvalidate();
+  }
+
   /** Adds a graphic to the overlay. */
   public void add(Graphic graphic) {
     synchronized (lock) {
@@ -236,7 +258,9 @@ public class GraphicOverlay extends View {
   /** Removes a graphic from the overlay. */
   public void remove(Graphic graphic) {
     synchronized (lock) {
-      graphics.remove(graphic);
+      if (graphics.remove(graphic)) {
+        graphic.release();
+      }
     }
     postInvalidate();
   }
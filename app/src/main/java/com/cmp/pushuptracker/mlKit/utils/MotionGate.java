@@ -0,0 +1,131 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import android.os.SystemClock;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+/**
+ * Skips pose detection while the camera sees no motion, e.g. during a plank hold or a rest
+ * between sets, by comparing a small luma thumbnail of each frame with the last analyzed one.
+ *
+ * <p>The thumbnail is sampled from the Y plane, or the first channel of an RGBA frame, on a coarse
+ * grid, so checking a frame costs a few thousand byte reads. Once the scene has been still for a
+ * moment only one frame is analyzed every so often, to keep the overlay fresh, and the first frame
+ * that differs from the last analyzed one is analyzed straight away. Comparing against the last
+ * analyzed frame rather than the previous one means slow movements still add up to motion. Thread
+ * safe.
+ */
+public class MotionGate {
+  // Size of the thumbnail compared between frames. Each cell averages a 2x2 block of pixels,
+  // which smooths out most sensor noise.
+  private static final int GRID_WIDTH = 40;
+  private static final int GRID_HEIGHT = 30;
+  // Luma change of a cell, out of 255, that counts as motion, and the fraction of cells that must
+  // change for the frame to count as moving.
+  private static final int CELL_DIFF_THRESHOLD = 24;
+  private static final float MOTION_CELL_FRACTION = 0.01f;
+
+  // How long the scene must be still before frames are skipped.
+  private static final long SETTLE_MS = 500;
+  // While still, time between frames that are analyzed anyway.
+  private static final long STATIC_DETECT_INTERVAL_MS = 1000;
+
+  private final LongSupplier clock;
+  private final int[] thumbnail = new int[GRID_WIDTH * GRID_HEIGHT];
+  private final int[] reference = new int[GRID_WIDTH * GRID_HEIGHT];
+  private boolean hasReference;
+  // When the scene was last seen moving, and when a frame was last analyzed.
+  private long lastMotionMs;
+  private long lastDetectMs;
+  // The frame last passed by isWorthDetecting: when it came, and whether it becomes the reference
+  // once analyzed.
+  private long pendingMs;
+  private boolean pendingReferenceUpdate;
+
+  public MotionGate() {
+    this(SystemClock::elapsedRealtime);
+  }
+
+  public MotionGate(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Returns whether the frame with the given luma plane is worth analyzing. {@code yPlane} is read
+   * with absolute gets, so its position is left alone. Nothing counts as analyzed until {@link
+   * #onDetecting}, so a frame that is dropped later on doesn't use up the next periodic refresh or
+   * move the reference.
+   */
+  public synchronized boolean isWorthDetecting(
+      ByteBuffer yPlane, int width, int height, int rowStride, int pixelStride) {
+    long now = clock.getAsLong();
+    sampleThumbnail(yPlane, width, height, rowStride, pixelStride);
+    pendingMs = now;
+    if (!hasReference || isMoving()) {
+      lastMotionMs = now;
+      pendingReferenceUpdate = true;
+    } else if (now - lastMotionMs < SETTLE_MS) {
+      // Still settling. Keep the reference from the last moving frame, so a slow movement is
+      // measured against where it started rather than frame by frame.
+      pendingReferenceUpdate = false;
+    } else if (now - lastDetectMs < STATIC_DETECT_INTERVAL_MS) {
+      return false;
+    } else {
+      // Follow slow lighting changes while still.
+      pendingReferenceUpdate = true;
+    }
+    return true;
+  }
+
+  /**
+   * Records that the frame last passed by {@link #isWorthDetecting} is being analyzed. Call from
+   * the thread that checked it, before checking the next frame.
+   */
+  public synchronized void onDetecting() {
+    lastDetectMs = pendingMs;
+    if (pendingReferenceUpdate) {
+      updateReference();
+    }
+  }
+
+  /** Forgets the last analyzed frame, so the next frame is analyzed. */
+  public synchronized void reset() {
+    hasReference = false;
+  }
+
+  private void sampleThumbnail(
+      ByteBuffer yPlane, int width, int height, int rowStride, int pixelStride) {
+    for (int gridY = 0; gridY < GRID_HEIGHT; gridY++) {
+      int y = Math.min(gridY * height / GRID_HEIGHT, height - 2);
+      int rowStart = y * rowStride;
+      for (int gridX = 0; gridX < GRID_WIDTH; gridX++) {
+        int x = Math.min(gridX * width / GRID_WIDTH, width - 2);
+        int index = rowStart + x * pixelStride;
+        thumbnail[gridY * GRID_WIDTH + gridX] =
+            (yPlane.get(index) & 0xFF)
+                + (yPlane.get(index + pixelStride) & 0xFF)
+                + (yPlane.get(index + rowStride) & 0xFF)
+                + (yPlane.get(index + rowStride + pixelStride) & 0xFF);
+      }
+    }
+  }
+
+  private void updateReference() {
+    System.arraycopy(thumbnail, 0, reference, 0, thumbnail.length);
+    hasReference = true;
+  }
+
+  private boolean isMoving() {
+    int motionCells = (int) Math.ceil(thumbnail.length * MOTION_CELL_FRACTION);
+    int changedCells = 0;
+    for (int i = 0; i < thumbnail.length; i++) {
+      // Cells hold the sum of four pixels.
+      if (Math.abs(thumbnail[i] - reference[i]) > CELL_DIFF_THRESHOLD * 4
+          && ++changedCells >= motionCells) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -7,10 +7,10 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.util.Log;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Monitors device temperature.
@@ -19,7 +19,10 @@ public final class TemperatureMonitor implements SensorEventListener {
 
   private static final String TAG = "TemperatureMonitor";
 
-  public Map<String, Float> sensorReadingsCelsius = new HashMap<>();
+  // Written on the sensor thread, read from any thread.
+  public Map<String, Float> sensorReadingsCelsius = new ConcurrentHashMap<>();
+  // First valid reading of each sensor, which its rise is measured from.
+  private final Map<String, Float> baselinesCelsius = new ConcurrentHashMap<>();
 
   private final SensorManager sensorManager;
 
@@ -55,11 +58,38 @@ public final class TemperatureMonitor implements SensorEventListener {
     }
   }
 
+  /**
+   * Returns the largest rise of any sensor since its own first valid reading, or NaN if there is no
+   * reading yet. Sensors report at different times and sit in different parts of the device, so
+   * each is only compared with itself.
+   */
+  public float getMaxTemperatureRiseCelsius() {
+    float maxRiseC = Float.NaN;
+    for (Map.Entry<String, Float> entry : sensorReadingsCelsius.entrySet()) {
+      Float baselineC = baselinesCelsius.get(entry.getKey());
+      float tempC = entry.getValue();
+      // Skips likely invalid sensor readings
+      if (baselineC == null || tempC < 0) {
+        continue;
+      }
+      float riseC = tempC - baselineC;
+      if (Float.isNaN(maxRiseC) || riseC > maxRiseC) {
+        maxRiseC = riseC;
+      }
+    }
+    return maxRiseC;
+  }
+
   @Override
   public void onAccuracyChanged(Sensor sensor, int accuracy) {}
 
   @Override
   public void onSensorChanged(SensorEvent sensorEvent) {
-    sensorReadingsCelsius.put(sensorEvent.sensor.getName(), sensorEvent.values[0]);
+    String name = sensorEvent.sensor.getName();
+    float tempC = sensorEvent.values[0];
+    if (tempC >= 0) {
+      baselinesCelsius.putIfAbsent(name, tempC);
+    }
+    sensorReadingsCelsius.put(name, tempC);
   }
 }
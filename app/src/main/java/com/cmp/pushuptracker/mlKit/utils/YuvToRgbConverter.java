@@ -0,0 +1,288 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts NV21 frames to ARGB_8888 pixels in a single pass, rotating and mirroring them on the
+ * way, so camera frames don't have to go through a JPEG encode and decode to become bitmaps. Also
+ * packs the planes of YUV_420_888 camera images into NV21.
+ *
+ * <p>Uses BT.601 limited range coefficients in 10-bit fixed point, the same as the NV21 decoding
+ * in the Android camera samples. Plain Java, so it runs and can be checked off device.
+ */
+public final class YuvToRgbConverter {
+  // One row of a U plane, used by interleaveChromaPlanes on each thread and grown as needed.
+  private static final ThreadLocal<byte[]> chromaRowBuffer =
+      new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[0];
+        }
+      };
+
+  private YuvToRgbConverter() {}
+
+  /** Returns the width of a frame after rotating it by {@code rotationDegrees}. */
+  public static int getRotatedWidth(int width, int height, int rotationDegrees) {
+    return isTransposed(rotationDegrees) ? height : width;
+  }
+
+  /** Returns the height of a frame after rotating it by {@code rotationDegrees}. */
+  public static int getRotatedHeight(int width, int height, int rotationDegrees) {
+    return isTransposed(rotationDegrees) ? width : height;
+  }
+
+  /**
+   * Converts an NV21 frame to ARGB pixels.
+   *
+   * <p>The frame is rotated clockwise by {@code rotationDegrees}, a multiple of 90, and then
+   * mirrored horizontally if {@code flipX} is set, the same as {@code BitmapUtils} did with a
+   * {@link android.graphics.Matrix}. {@code out} receives the rotated frame row by row, and must
+   * hold at least {@code width * height} pixels.
+   */
+  public static void nv21ToArgb(
+      byte[] nv21, int width, int height, int rotationDegrees, boolean flipX, int[] out) {
+    int outWidth = getRotatedWidth(width, height, rotationDegrees);
+    // Output index of source pixel (x, y) is origin + x * xStep + y * yStep.
+    int origin = outputIndex(0, 0, width, height, rotationDegrees, flipX, outWidth);
+    int xStep = outputIndex(1, 0, width, height, rotationDegrees, flipX, outWidth) - origin;
+    int yStep = outputIndex(0, 1, width, height, rotationDegrees, flipX, outWidth) - origin;
+
+    int frameSize = width * height;
+    for (int y = 0; y < height; y++) {
+      int yIndex = y * width;
+      int uvIndex = frameSize + (y >> 1) * width;
+      int outIndex = origin + y * yStep;
+      int u = 0;
+      int v = 0;
+      for (int x = 0; x < width; x++) {
+        if ((x & 1) == 0) {
+          v = (nv21[uvIndex++] & 0xff) - 128;
+          u = (nv21[uvIndex++] & 0xff) - 128;
+        }
+        out[outIndex] = toArgb(nv21[yIndex++] & 0xff, u, v);
+        outIndex += xStep;
+      }
+    }
+  }
+
+  /**
+   * Converts YUV_420_888 planes to NV21.
+   *
+   * <p>The NV21 format consists of a single byte array containing the Y, U and V values. For an
+   * image of size S, the first S positions of the array contain all the Y values. The remaining
+   * positions contain interleaved V and U values. U and V are subsampled by a factor of 2 in both
+   * dimensions, so there are S/4 U values and S/4 V values. In summary, the NV21 array will contain
+   * S Y values followed by S/4 VU values: YYYYYYYYYYYYYY(...)YVUVUVUVU(...)VU
+   *
+   * <p>YUV_420_888 is a generic format that can describe any YUV image where U and V are subsampled
+   * by a factor of 2 in both dimensions. The Y plane is guaranteed not to be interleaved, so we can
+   * just copy its values into the first part of the NV21 array. The U and V planes share their row
+   * and pixel strides, and may already have the representation in the NV21 format. This happens if
+   * the planes share the same buffer, the V buffer is one position before the U buffer and the
+   * planes have a pixelStride of 2. If this is case, we can just copy them to the NV21 array.
+   *
+   * <p>Otherwise, planes with a pixelStride of 2 are still copied a row at a time, and only other
+   * layouts fall back to copying value by value. The result is written to {@code out}, which must
+   * hold at least the NV21 size of the frame. Buffer positions are rewound.
+   */
+  public static void yuv420ToNv21(
+      ByteBuffer yBuffer,
+      int yRowStride,
+      int yPixelStride,
+      ByteBuffer uBuffer,
+      ByteBuffer vBuffer,
+      int uvRowStride,
+      int uvPixelStride,
+      int width,
+      int height,
+      byte[] out) {
+    int imageSize = width * height;
+
+    if (areUVPlanesNV21(uBuffer, vBuffer, width, height)) {
+      // Copy the Y values.
+      copyLumaPlane(yBuffer, yRowStride, width, height, out);
+
+      // Get the first V value from the V buffer, since the U buffer does not contain it.
+      vBuffer.get(out, imageSize, 1);
+      // Copy the first U value and the remaining VU values from the U buffer.
+      uBuffer.get(out, imageSize + 1, 2 * imageSize / 4 - 1);
+      uBuffer.rewind();
+      vBuffer.rewind();
+    } else if (yPixelStride == 1 && uvPixelStride == 2) {
+      copyLumaPlane(yBuffer, yRowStride, width, height, out);
+      interleaveChromaPlanes(uBuffer, vBuffer, uvRowStride, width, height, out, imageSize);
+    } else {
+      // Fallback to copying the UV values one by one, which is slower but also works.
+      // Unpack Y.
+      unpackPlane(yBuffer, yRowStride, yPixelStride, width, height, out, 0, 1);
+      // Unpack U.
+      unpackPlane(uBuffer, uvRowStride, uvPixelStride, width, height, out, imageSize + 1, 2);
+      // Unpack V.
+      unpackPlane(vBuffer, uvRowStride, uvPixelStride, width, height, out, imageSize, 2);
+    }
+  }
+
+  private static int toArgb(int y, int u, int v) {
+    int y1192 = 1192 * Math.max(0, y - 16);
+    int r = clamp(y1192 + 1634 * v);
+    int g = clamp(y1192 - 833 * v - 400 * u);
+    int b = clamp(y1192 + 2066 * u);
+    return 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+  }
+
+  private static int clamp(int value) {
+    return value < 0 ? 0 : Math.min(value, 262143);
+  }
+
+  private static int outputIndex(
+      int x, int y, int width, int height, int rotationDegrees, boolean flipX, int outWidth) {
+    int outX;
+    int outY;
+    switch (normalize(rotationDegrees)) {
+      case 90:
+        outX = height - 1 - y;
+        outY = x;
+        break;
+      case 180:
+        outX = width - 1 - x;
+        outY = height - 1 - y;
+        break;
+      case 270:
+        outX = y;
+        outY = width - 1 - x;
+        break;
+      default:
+        outX = x;
+        outY = y;
+    }
+    if (flipX) {
+      outX = outWidth - 1 - outX;
+    }
+    return outY * outWidth + outX;
+  }
+
+  private static boolean isTransposed(int rotationDegrees) {
+    int rotation = normalize(rotationDegrees);
+    return rotation == 90 || rotation == 270;
+  }
+
+  private static int normalize(int rotationDegrees) {
+    return ((rotationDegrees % 360) + 360) % 360;
+  }
+
+  /** Copies a Y plane with a pixelStride of 1 into {@code out}, dropping any row padding. */
+  private static void copyLumaPlane(
+      ByteBuffer buffer, int rowStride, int width, int height, byte[] out) {
+    buffer.rewind();
+    if (rowStride == width) {
+      buffer.get(out, 0, width * height);
+    } else {
+      for (int row = 0; row < height; row++) {
+        buffer.position(row * rowStride);
+        buffer.get(out, row * width, width);
+      }
+    }
+    buffer.rewind();
+  }
+
+  /**
+   * Interleaves U and V planes with a pixelStride of 2 into NV21 VU pairs, a row at a time. Each V
+   * row is copied in bulk, which puts the V values in place, then the U values are copied over the
+   * bytes in between.
+   */
+  private static void interleaveChromaPlanes(
+      ByteBuffer uBuffer,
+      ByteBuffer vBuffer,
+      int rowStride,
+      int width,
+      int height,
+      byte[] out,
+      int offset) {
+    int chromaHeight = height / 2;
+    // Bytes spanned by one row of pixelStride 2 values. The last row of a plane may end there.
+    int rowLength = 2 * (width / 2) - 1;
+    byte[] uRow = chromaRowBuffer.get();
+    if (uRow.length < rowLength) {
+      uRow = new byte[rowLength];
+      chromaRowBuffer.set(uRow);
+    }
+    for (int row = 0; row < chromaHeight; row++) {
+      int outputPos = offset + row * 2 * (width / 2);
+      vBuffer.position(row * rowStride);
+      vBuffer.get(out, outputPos, rowLength);
+      uBuffer.position(row * rowStride);
+      uBuffer.get(uRow, 0, rowLength);
+      for (int i = 0; i < rowLength; i += 2) {
+        out[outputPos + i + 1] = uRow[i];
+      }
+    }
+    uBuffer.rewind();
+    vBuffer.rewind();
+  }
+
+  /** Checks if the UV plane buffers of a YUV_420_888 image are in the NV21 format. */
+  private static boolean areUVPlanesNV21(
+      ByteBuffer uBuffer, ByteBuffer vBuffer, int width, int height) {
+    int imageSize = width * height;
+
+    // Backup buffer properties.
+    int vBufferPosition = vBuffer.position();
+    int uBufferLimit = uBuffer.limit();
+
+    // Advance the V buffer by 1 byte, since the U buffer will not contain the first V value.
+    vBuffer.position(vBufferPosition + 1);
+    // Chop off the last byte of the U buffer, since the V buffer will not contain the last U value.
+    uBuffer.limit(uBufferLimit - 1);
+
+    // Check that the buffers are equal and have the expected number of elements.
+    boolean areNV21 =
+        (vBuffer.remaining() == (2 * imageSize / 4 - 2)) && (vBuffer.compareTo(uBuffer) == 0);
+
+    // Restore buffers to their initial state.
+    vBuffer.position(vBufferPosition);
+    uBuffer.limit(uBufferLimit);
+
+    return areNV21;
+  }
+
+  /**
+   * Unpack an image plane into a byte array.
+   *
+   * <p>The input plane data will be copied in 'out', starting at 'offset' and every pixel will be
+   * spaced by 'pixelStride'. Note that there is no row padding on the output.
+   */
+  private static void unpackPlane(
+      ByteBuffer buffer,
+      int planeRowStride,
+      int planePixelStride,
+      int width,
+      int height,
+      byte[] out,
+      int offset,
+      int pixelStride) {
+    buffer.rewind();
+
+    // Compute the size of the current plane.
+    // We assume that it has the aspect ratio as the original image.
+    int numRow = (buffer.limit() + planeRowStride - 1) / planeRowStride;
+    if (numRow == 0) {
+      return;
+    }
+    int scaleFactor = height / numRow;
+    int numCol = width / scaleFactor;
+
+    // Extract the data in the output buffer.
+    int outputPos = offset;
+    int rowStart = 0;
+    for (int row = 0; row < numRow; row++) {
+      int inputPos = rowStart;
+      for (int col = 0; col < numCol; col++) {
+        out[outputPos] = buffer.get(inputPos);
+        outputPos += pixelStride;
+        inputPos += planePixelStride;
+      }
+      rowStart += planeRowStride;
+    }
+  }
+}
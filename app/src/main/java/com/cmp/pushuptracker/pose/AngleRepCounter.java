@@ -0,0 +1,152 @@
+package com.cmp.pushuptracker.pose;
+
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_ELBOW;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_HIP;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_KNEE;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_SHOULDER;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_WRIST;
+import static com.google.mlkit.vision.pose.PoseLandmark.RIGHT_ELBOW;
+import static com.google.mlkit.vision.pose.PoseLandmark.RIGHT_HIP;
+import static com.google.mlkit.vision.pose.PoseLandmark.RIGHT_KNEE;
+import static com.google.mlkit.vision.pose.PoseLandmark.RIGHT_SHOULDER;
+import static com.google.mlkit.vision.pose.PoseLandmark.RIGHT_WRIST;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Counts push-ups from a stream of {@link LandmarkFrame}s by the angle of the elbow, i.e. between
+ * the upper and lower arm.
+ *
+ * <p>A rep is counted when the arm bends below the down angle and then straightens past the up
+ * angle again. The gap between the two is the hysteresis, and as angles don't depend on how far
+ * the user is from the camera, neither does it. While the hip is visible, a bottom only counts with
+ * the body held roughly straight from shoulder to knee, so bending the arms while sitting or
+ * kneeling doesn't. Decisions only depend on the angles of the frames seen, not on how many there
+ * are per second, so slow devices count the same reps, as long as a frame near the bottom and one
+ * near the top of each rep get analyzed.
+ *
+ * <p>Each frame costs a handful of multiplications and at most two arctangents. Not thread safe;
+ * feed frames in capture order from one thread.
+ */
+public class AngleRepCounter {
+  // Elbow angles, in degrees, below which the arm counts as bent and above which it counts as
+  // straight. A straight arm is about 180 degrees, the bottom of a full push-up 70 to 90.
+  private static final float DEFAULT_DOWN_ANGLE = 100f;
+  private static final float DEFAULT_UP_ANGLE = 150f;
+  // Hip angle, between torso and thigh, below which the body is too bent for a push-up.
+  private static final float MIN_HIP_ANGLE = 130f;
+  // Landmarks less likely than this to be visible aren't trusted.
+  private static final float MIN_VISIBILITY = 0.5f;
+  // After this long without a usable frame the phase is forgotten, so a user who walks off
+  // mid-rep and comes back isn't counted a half rep.
+  private static final long LOST_RESET_MS = 2000;
+
+  /** Where in a rep the user is. */
+  public enum Phase {
+    /** No straight arm seen yet, since the start or since the user was lost. */
+    UNKNOWN,
+    /** Arm straight, or on the way down. */
+    UP,
+    /** Arm bent, or on the way up. */
+    DOWN
+  }
+
+  private final float downAngle;
+  private final float upAngle;
+
+  private Phase phase = Phase.UNKNOWN;
+  private int numRepeats;
+  private long lastFrameMs = Long.MIN_VALUE;
+
+  public AngleRepCounter() {
+    this(DEFAULT_DOWN_ANGLE, DEFAULT_UP_ANGLE);
+  }
+
+  public AngleRepCounter(float downAngle, float upAngle) {
+    Preconditions.checkArgument(downAngle < upAngle, "down angle must be below up angle");
+    this.downAngle = downAngle;
+    this.upAngle = upAngle;
+  }
+
+  /**
+   * Adds the landmarks of the next frame and returns the number of reps so far. Frames without a
+   * pose, or where the arms can't be seen, leave the count and phase as they are.
+   */
+  public int addFrame(LandmarkFrame frame) {
+    if (!frame.hasPose()) {
+      return numRepeats;
+    }
+    // Measure the arm that is better visible; in a side view the far one is mostly guessed.
+    boolean left = armVisibility(frame, LEFT_SHOULDER, LEFT_ELBOW, LEFT_WRIST)
+        >= armVisibility(frame, RIGHT_SHOULDER, RIGHT_ELBOW, RIGHT_WRIST);
+    int shoulder = left ? LEFT_SHOULDER : RIGHT_SHOULDER;
+    int elbow = left ? LEFT_ELBOW : RIGHT_ELBOW;
+    int wrist = left ? LEFT_WRIST : RIGHT_WRIST;
+    if (armVisibility(frame, shoulder, elbow, wrist) < MIN_VISIBILITY) {
+      return numRepeats;
+    }
+
+    long timestampMs = frame.getTimestampMs();
+    if (lastFrameMs != Long.MIN_VALUE && timestampMs - lastFrameMs > LOST_RESET_MS) {
+      phase = Phase.UNKNOWN;
+    }
+    lastFrameMs = timestampMs;
+
+    float elbowAngle = angle(frame, shoulder, elbow, wrist);
+    if (elbowAngle >= upAngle) {
+      if (phase == Phase.DOWN) {
+        numRepeats++;
+      }
+      phase = Phase.UP;
+    } else if (elbowAngle <= downAngle && phase == Phase.UP && isBodyStraight(frame, left)) {
+      phase = Phase.DOWN;
+    }
+    return numRepeats;
+  }
+
+  public int getNumRepeats() {
+    return numRepeats;
+  }
+
+  public Phase getPhase() {
+    return phase;
+  }
+
+  /** Starts counting from zero again. */
+  public void reset() {
+    numRepeats = 0;
+    phase = Phase.UNKNOWN;
+    lastFrameMs = Long.MIN_VALUE;
+  }
+
+  /** Returns whether the body is straight enough for a push-up. True if the hip can't be seen. */
+  private static boolean isBodyStraight(LandmarkFrame frame, boolean left) {
+    int shoulder = left ? LEFT_SHOULDER : RIGHT_SHOULDER;
+    int hip = left ? LEFT_HIP : RIGHT_HIP;
+    int knee = left ? LEFT_KNEE : RIGHT_KNEE;
+    if (Math.min(frame.getVisibility(hip), frame.getVisibility(knee)) < MIN_VISIBILITY) {
+      return true;
+    }
+    return angle(frame, shoulder, hip, knee) >= MIN_HIP_ANGLE;
+  }
+
+  private static float armVisibility(LandmarkFrame frame, int shoulder, int elbow, int wrist) {
+    return Math.min(
+        frame.getVisibility(shoulder),
+        Math.min(frame.getVisibility(elbow), frame.getVisibility(wrist)));
+  }
+
+  /**
+   * Returns the angle at {@code vertex} between the lines to {@code a} and {@code b}, in degrees
+   * from 0 to 180. Only X and Y are used, Z is too noisy to help.
+   */
+  private static float angle(LandmarkFrame frame, int a, int vertex, int b) {
+    float ax = frame.getX(a) - frame.getX(vertex);
+    float ay = frame.getY(a) - frame.getY(vertex);
+    float bx = frame.getX(b) - frame.getX(vertex);
+    float by = frame.getY(b) - frame.getY(vertex);
+    double cross = ax * by - ay * bx;
+    double dot = ax * bx + ay * by;
+    return (float) Math.toDegrees(Math.atan2(Math.abs(cross), dot));
+  }
+}
@@ -0,0 +1,123 @@
+package com.cmp.pushuptracker.pose;
+
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Landmarks of one detected pose in plain float arrays, the common output of every {@link
+ * PoseBackend}, so classification, rep counting and drawing don't depend on the detector.
+ *
+ * <p>Both ML Kit and MediaPipe report the same 33 BlazePose landmarks, in the order of the {@code
+ * PoseLandmark} constants. Positions are in pixels of the upright image the pose was detected in,
+ * with Z on roughly the same scale as X, and visibility is the likelihood, from 0 to 1, that the
+ * landmark is in the frame and not occluded. A frame without a pose has no landmarks.
+ *
+ * <p>Frames are filled once by the backend that detects them and then only read, down to drawing,
+ * so a frame is never copied on its way through the app. To avoid allocating one per camera frame
+ * they usually come from a {@link LandmarkFramePool}. Like pooled bitmaps, they're reference
+ * counted: a frame starts with one reference, owned by whoever acquired it, every {@link #retain}
+ * must be matched by a {@link #release}, and a pooled frame is reused once the last reference is
+ * released. Reading and filling a frame is not thread safe.
+ */
+public final class LandmarkFrame {
+  public static final int NUM_LANDMARKS = 33;
+  public static final int NUM_DIMS = 3;
+
+  // X, Y and Z of each landmark, laid out as X0,Y0,Z0,X1,Y1,Z1...
+  private final float[] positions = new float[NUM_LANDMARKS * NUM_DIMS];
+  private final float[] visibility = new float[NUM_LANDMARKS];
+  private boolean hasPose;
+  private long timestampMs;
+
+  @Nullable private final LandmarkFramePool pool;
+  private final AtomicInteger refCount = new AtomicInteger(1);
+
+  /** Creates a frame without a pose that doesn't belong to a pool. */
+  public LandmarkFrame() {
+    this(null);
+  }
+
+  LandmarkFrame(@Nullable LandmarkFramePool pool) {
+    this.pool = pool;
+  }
+
+  /** Adds a reference, keeping the frame from being reused until it is released. */
+  public LandmarkFrame retain() {
+    Preconditions.checkState(refCount.getAndIncrement() > 0, "frame already released");
+    return this;
+  }
+
+  /** Drops a reference. The last one returns a pooled frame to its pool. */
+  public void release() {
+    int remaining = refCount.decrementAndGet();
+    Preconditions.checkState(remaining >= 0, "frame released too many times");
+    if (remaining == 0 && pool != null) {
+      pool.recycle(this);
+    }
+  }
+
+  /** Prepares a frame coming out of its pool for the next holder. */
+  void reset() {
+    refCount.set(1);
+    timestampMs = 0;
+    clear();
+  }
+
+  /** Returns when the frame was captured, in milliseconds on a monotonic clock. */
+  public long getTimestampMs() {
+    return timestampMs;
+  }
+
+  public void setTimestampMs(long timestampMs) {
+    this.timestampMs = timestampMs;
+  }
+
+  public boolean hasPose() {
+    return hasPose;
+  }
+
+  /** Removes all landmarks, for a frame in which no pose was found. */
+  public void clear() {
+    hasPose = false;
+    Arrays.fill(positions, 0);
+    Arrays.fill(visibility, 0);
+  }
+
+  /**
+   * Sets one landmark, {@code landmark} being one of the {@code PoseLandmark} constants. Landmarks
+   * that are never set stay at the origin with 0 visibility.
+   */
+  public void setLandmark(int landmark, float x, float y, float z, float visibility) {
+    int i = landmark * NUM_DIMS;
+    positions[i] = x;
+    positions[i + 1] = y;
+    positions[i + 2] = z;
+    this.visibility[landmark] = visibility;
+    hasPose = true;
+  }
+
+  public float getX(int landmark) {
+    return positions[landmark * NUM_DIMS];
+  }
+
+  public float getY(int landmark) {
+    return positions[landmark * NUM_DIMS + 1];
+  }
+
+  public float getZ(int landmark) {
+    return positions[landmark * NUM_DIMS + 2];
+  }
+
+  public float getVisibility(int landmark) {
+    return visibility[landmark];
+  }
+
+  /** Copies the positions to {@code out}, laid out as X0,Y0,Z0,X1,Y1,Z1... */
+  public void copyPositions(float[] out) {
+    System.arraycopy(positions, 0, out, 0, positions.length);
+  }
+}
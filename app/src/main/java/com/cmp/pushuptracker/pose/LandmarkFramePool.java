@@ -0,0 +1,41 @@
+package com.cmp.pushuptracker.pose;
+
+/**
+ * A small pool of {@link LandmarkFrame}s, so backends can fill the same few frames over and over
+ * instead of allocating one per camera frame. Frames return to the pool once every holder has
+ * released them; frames that are never released are simply garbage collected. Thread safe.
+ */
+public class LandmarkFramePool {
+  private final LandmarkFrame[] freeFrames;
+  private int numFreeFrames;
+
+  public LandmarkFramePool(int maxPooledFrames) {
+    this.freeFrames = new LandmarkFrame[maxPooledFrames];
+  }
+
+  /**
+   * Returns a frame without a pose, reusing a pooled one if any. The caller holds the only
+   * reference.
+   */
+  public LandmarkFrame acquire() {
+    LandmarkFrame frame = null;
+    synchronized (this) {
+      if (numFreeFrames > 0) {
+        frame = freeFrames[--numFreeFrames];
+        freeFrames[numFreeFrames] = null;
+      }
+    }
+    if (frame == null) {
+      return new LandmarkFrame(this);
+    }
+    frame.reset();
+    return frame;
+  }
+
+  /** Puts a frame nobody holds back in the pool, or drops it if the pool is full. */
+  synchronized void recycle(LandmarkFrame frame) {
+    if (numFreeFrames < freeFrames.length) {
+      freeFrames[numFreeFrames++] = frame;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.cmp.pushuptracker.pose
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import androidx.annotation.OptIn
+import androidx.camera.core.ExperimentalGetImage
+import androidx.camera.core.ImageProxy
+import com.cmp.pushuptracker.camera.PoseProcessor
+import com.cmp.pushuptracker.mlKit.posedetector.ModelSwitchingPoseDetector
+import com.cmp.pushuptracker.mlKit.posedetector.VisionProcessorBase
+import com.cmp.pushuptracker.mlKit.utils.FrameDropCounter
+import com.cmp.pushuptracker.mlKit.utils.FrameGate
+import com.cmp.pushuptracker.mlKit.utils.FrameRateGovernor
+import com.cmp.pushuptracker.mlKit.utils.TemperatureMonitor
+import com.google.mlkit.vision.common.InputImage
+import com.google.mlkit.vision.pose.Pose
+import com.google.mlkit.vision.pose.PoseDetector
+import com.google.mlkit.vision.pose.PoseDetectorOptionsBase
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs an ML Kit pose detector on camera frames as a [PoseBackend].
+ *
+ * Frames go straight to the detector, which works on its own thread, and are closed once it's
+ * done with them. Only one frame is in the detector at a time; frames arriving meanwhile are
+ * dropped. Frames are gated and paced the same way as by the MediaPipe backend, [PoseProcessor],
+ * so the two can be compared on equal terms, and the model follows the governor like for
+ * [com.cmp.pushuptracker.mlKit.posedetector.PoseDetectorProcessor]. [warmDetector], if given, is
+ * a detector already created with [options], which the backend takes over.
+ */
+class MlKitPoseBackend(
+    context: Context,
+    options: PoseDetectorOptionsBase,
+    warmDetector: PoseDetector? = null
+) : PoseBackend {
+
+    private val frameRateGovernor = FrameRateGovernor()
+    private val temperatureMonitor =
+        TemperatureMonitor(context).also { frameRateGovernor.setTemperatureMonitor(it) }
+    private val detector =
+        ModelSwitchingPoseDetector(
+            options,
+            frameRateGovernor,
+            /* streamMode= */ true,
+            warmDetector
+        )
+    // One frame is handed to the listener at a time, so one frame is enough unless it keeps some.
+    private val framePool = LandmarkFramePool(2)
+    @Volatile
+    private var listener: PoseBackend.Listener? = null
+    @Volatile
+    private var isClosed = false
+
+    override val frameDrops = FrameDropCounter()
+
+    override val frameIntervalMs: Long
+        get() = frameRateGovernor.frameIntervalMs
+
+    // Keeps one frame in the detector at a time, from handing it over until its result comes back.
+    private val frameGate = FrameGate(frameRateGovernor, frameDrops, true)
+
+    override fun setListener(listener: PoseBackend.Listener?) {
+        this.listener = listener
+    }
+
+    @OptIn(ExperimentalGetImage::class)
+    override fun analyze(image: ImageProxy) {
+        if (!frameGate.admit(image)) {
+            return
+        }
+        val mediaImage = image.image
+        if (isClosed || mediaImage == null) {
+            frameGate.dropUnavailable(image)
+            return
+        }
+
+        val captureTimeMs = TimeUnit.NANOSECONDS.toMillis(image.imageInfo.timestamp)
+        val detectStartMs = SystemClock.elapsedRealtime()
+        detector
+            .current()
+            .process(InputImage.fromMediaImage(mediaImage, image.imageInfo.rotationDegrees))
+            .addOnCompleteListener(VisionProcessorBase.DIRECT_EXECUTOR) { task ->
+                image.close()
+                if (task.isSuccessful) {
+                    frameRateGovernor.onFrameProcessed(
+                        SystemClock.elapsedRealtime() - detectStartMs
+                    )
+                    val frame = framePool.acquire()
+                    frame.timestampMs = captureTimeMs
+                    fillLandmarkFrame(task.result, frame)
+                    listener?.onLandmarks(frame)
+                    frame.release()
+                } else {
+                    Log.e(TAG, "Error during pose detection", task.exception)
+                    frameDrops.count(FrameDropCounter.Reason.UNAVAILABLE)
+                }
+                frameGate.onFrameDone()
+            }
+    }
+
+    override fun close() {
+        isClosed = true
+        detector.close()
+        temperatureMonitor.stop()
+    }
+
+    companion object {
+        private const val TAG = "MlKitPoseBackend"
+
+        /**
+         * Fills [frame] with the landmarks of an ML Kit pose, using in-frame likelihood as
+         * visibility. [offsetX] and [offsetY] are added to every position, for poses detected in a
+         * part of the frame.
+         */
+        fun fillLandmarkFrame(
+            pose: Pose,
+            frame: LandmarkFrame,
+            offsetX: Float = 0f,
+            offsetY: Float = 0f
+        ) {
+            for (landmark in pose.allPoseLandmarks) {
+                val position = landmark.position3D
+                frame.setLandmark(
+                    landmark.landmarkType,
+                    position.x + offsetX,
+                    position.y + offsetY,
+                    position.z,
+                    landmark.inFrameLikelihood
+                )
+            }
+        }
+    }
+}
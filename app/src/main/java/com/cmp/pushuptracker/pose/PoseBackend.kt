@@ -0,0 +1,39 @@
+package com.cmp.pushuptracker.pose
+
+import androidx.camera.core.ImageProxy
+import com.cmp.pushuptracker.mlKit.utils.FrameDropCounter
+
+/**
+ * A pose detector that turns camera frames into [LandmarkFrame]s, so the rest of the app can run
+ * on whichever detector suits the device. Each backend handles its own threading: [analyze]
+ * returns right away and landmarks arrive later on a backend thread.
+ */
+interface PoseBackend {
+
+    /** Camera frames that never got landmarks, by why they were dropped. */
+    val frameDrops: FrameDropCounter
+
+    /** Minimum time between analyzed frames the backend currently paces analysis to. */
+    val frameIntervalMs: Long
+
+    /** Sets who receives the landmarks of analyzed frames, or stops delivering them if null. */
+    fun setListener(listener: Listener?)
+
+    /**
+     * Queues a frame for detection, or drops it if the backend can't take it. Closes [image], once
+     * done with it, which may be after this returns.
+     */
+    fun analyze(image: ImageProxy)
+
+    /** Releases the detector. Later frames are dropped. */
+    fun close()
+
+    fun interface Listener {
+        /**
+         * Called on a backend thread with the landmarks of each analyzed frame, including frames
+         * without a pose. [frame] may be reused once this returns, unless the listener keeps a
+         * reference with [LandmarkFrame.retain].
+         */
+        fun onLandmarks(frame: LandmarkFrame)
+    }
+}
@@ -23,6 +23,7 @@ import androidx.compose.material3.OutlinedTextField
 import androidx.compose.material3.Scaffold
 import androidx.compose.material3.Text
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.collectAsState
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableIntStateOf
 import androidx.compose.runtime.mutableStateOf
@@ -39,6 +40,7 @@ import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.input.KeyboardType
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
+import androidx.hilt.navigation.compose.hiltViewModel
 import androidx.navigation.NavHostController
 import com.cmp.pushuptracker.R
 import com.cmp.pushuptracker.ui.components.AppBar
@@ -46,11 +48,17 @@ import com.cmp.pushuptracker.ui.components.RestIntervalSlider
 import com.cmp.pushuptracker.ui.screen.pushupPreviewScreen.LivePreviewActivity
 import com.cmp.pushuptracker.ui.theme.workSansFamily
 import com.cmp.pushuptracker.utils.TimeUtils
+import com.cmp.pushuptracker.utils.WarmUpState
+import com.cmp.pushuptracker.viewmodel.WarmUpViewmodel
 
 @SuppressLint("UnusedMaterial3ScaffoldPaddingParameter")
 @Composable
-fun StartWorkoutScreen(navController: NavHostController) {
+fun StartWorkoutScreen(
+    navController: NavHostController,
+    warmUpViewmodel: WarmUpViewmodel = hiltViewModel<WarmUpViewmodel>()
+) {
     var context = LocalContext.current
+    val warmUpState by warmUpViewmodel.warmUpState.collectAsState()
     var interval by remember { mutableIntStateOf(0) }
     var sets by remember { mutableIntStateOf(0) }
     var reps by remember { mutableIntStateOf(0) }
@@ -86,8 +94,11 @@ fun StartWorkoutScreen(navController: NavHostController) {
                 Spacer(Modifier.height(25.dp))
                 GetInfoCard(reps * sets, interval * (sets - 1))
                 Spacer(Modifier.height(25.dp))
+                // A failed warm-up isn't fatal, the workout then loads everything on its own.
                 GetPrimaryButton(
-                    modifier = Modifier.fillMaxWidth()
+                    modifier = Modifier.fillMaxWidth(),
+                    enabled = warmUpState == WarmUpState.READY || warmUpState == WarmUpState.FAILED,
+                    text = if (warmUpState == WarmUpState.WARMING_UP) "Preparing..." else "Start"
                 ) {
                     val intent = Intent(context, LivePreviewActivity::class.java)
                     context.startActivity(intent)
@@ -168,20 +179,27 @@ fun GetSliderField(interval: (interval: Int) -> Unit) {
 }
 
 @Composable
-fun GetPrimaryButton(modifier: Modifier = Modifier, onClick: () -> Unit) {
+fun GetPrimaryButton(
+    modifier: Modifier = Modifier,
+    enabled: Boolean = true,
+    text: String = "Start",
+    onClick: () -> Unit
+) {
     Button(
         onClick = onClick,
+        enabled = enabled,
         colors = ButtonDefaults.buttonColors(
             containerColor = MaterialTheme.colorScheme.primary
         ),
         modifier = modifier
     ) {
         Text(
-            "Start",
+            text,
             fontFamily = workSansFamily,
             fontWeight = FontWeight.SemiBold,
             fontSize = 16.sp,
-            color = MaterialTheme.colorScheme.onPrimary,
+            color = if (enabled) MaterialTheme.colorScheme.onPrimary
+            else MaterialTheme.colorScheme.onSurface.copy(alpha = 0.38f),
             modifier = Modifier.padding(vertical = 8.dp)
         )
     }
@@ -25,27 +25,42 @@ import android.widget.CompoundButton
 import android.widget.Toast
 import android.widget.ToggleButton
 import androidx.appcompat.app.AppCompatActivity
+import androidx.camera.view.PreviewView
 import com.cmp.pushuptracker.R
+import com.cmp.pushuptracker.camera.PoseProcessor
+import com.cmp.pushuptracker.mlKit.classification.PoseClassifierCache
+import com.cmp.pushuptracker.mlKit.posedetector.PoseWarmUpService
 import com.cmp.pushuptracker.mlKit.prefUtils.PreferenceUtils
-import com.cmp.pushuptracker.mlKit.utils.CameraSource
-import com.cmp.pushuptracker.mlKit.utils.CameraSourcePreview
+import com.cmp.pushuptracker.mlKit.utils.CameraXSource
 import com.cmp.pushuptracker.mlKit.utils.GraphicOverlay
 import com.google.android.gms.common.annotation.KeepName
+import com.cmp.pushuptracker.mlKit.posedetector.PoseBackendProcessor
 import com.cmp.pushuptracker.mlKit.posedetector.PoseDetectorProcessor
-import java.io.IOException
+import com.cmp.pushuptracker.pose.MlKitPoseBackend
+import dagger.hilt.android.AndroidEntryPoint
+import javax.inject.Inject
 
 @KeepName
+@AndroidEntryPoint
 class LivePreviewActivity :
     AppCompatActivity(), OnItemSelectedListener, CompoundButton.OnCheckedChangeListener {
 
-    private var cameraSource: CameraSource? = null
-    private var preview: CameraSourcePreview? = null
+    private var cameraSource: CameraXSource? = null
+    private var preview: PreviewView? = null
     private var graphicOverlay: GraphicOverlay? = null
     private var selectedModel = POSE_DETECTION
 
+    @Inject
+    lateinit var poseWarmUpService: PoseWarmUpService
+
+    @Inject
+    lateinit var poseClassifierCache: PoseClassifierCache
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         Log.d(TAG, "onCreate")
+        // Usually already done from the start screen, in which case this is a no-op.
+        poseWarmUpService.warmUp()
         setContentView(R.layout.activity_vision_live_preview)
 
         preview = findViewById(R.id.preview_view)
@@ -70,7 +85,7 @@ class LivePreviewActivity :
         // parent.getItemAtPosition(pos)
         selectedModel = parent?.getItemAtPosition(pos).toString()
         Log.d(TAG, "Selected model: $selectedModel")
-        preview?.stop()
+        cameraSource?.stop()
         createCameraSource(selectedModel)
         startCameraSource()
     }
@@ -83,41 +98,79 @@ class LivePreviewActivity :
         Log.d(TAG, "Set facing")
         if (cameraSource != null) {
             if (isChecked) {
-                cameraSource?.setFacing(CameraSource.CAMERA_FACING_FRONT)
+                cameraSource?.setFacing(CameraXSource.CAMERA_FACING_FRONT)
             } else {
-                cameraSource?.setFacing(CameraSource.CAMERA_FACING_BACK)
+                cameraSource?.setFacing(CameraXSource.CAMERA_FACING_BACK)
             }
         }
-        preview?.stop()
+        cameraSource?.stop()
         startCameraSource()
     }
 
     private fun createCameraSource(model: String) {
         // If there's no existing cameraSource, create one.
         if (cameraSource == null) {
-            cameraSource = CameraSource(this, graphicOverlay)
+            cameraSource = CameraXSource(this, this, graphicOverlay)
         }
         try {
             when (model) {
                 POSE_DETECTION -> {
                     val poseDetectorOptions =
                         PreferenceUtils.getPoseDetectorOptionsForLivePreview(this)
-                    Log.i(TAG, "Using Pose Detector with options $poseDetectorOptions")
                     val shouldShowInFrameLikelihood = true
                     val visualizeZ = true
                     val rescaleZ = true
                     val runClassification = true
-                    cameraSource!!.setMachineLearningFrameProcessor(
-                        PoseDetectorProcessor(
-                            this,
-                            poseDetectorOptions,
-                            shouldShowInFrameLikelihood,
-                            visualizeZ,
-                            rescaleZ,
-                            runClassification,
-                            /* isStreamMode = */ true
-                        )
-                    )
+                    val poseBackend = PreferenceUtils.getLivePreviewPoseBackend(this)
+                    when (poseBackend) {
+                        PreferenceUtils.LIVE_PREVIEW_POSE_BACKEND_ML_KIT,
+                        PreferenceUtils.LIVE_PREVIEW_POSE_BACKEND_MEDIAPIPE -> {
+                            val useMediaPipe =
+                                poseBackend == PreferenceUtils.LIVE_PREVIEW_POSE_BACKEND_MEDIAPIPE
+                            val backend =
+                                if (useMediaPipe) PoseProcessor
+                                else MlKitPoseBackend(
+                                    this,
+                                    poseDetectorOptions,
+                                    poseWarmUpService.takeDetector(poseDetectorOptions)
+                                )
+                            Log.i(TAG, "Using pose backend ${backend.javaClass.simpleName}")
+                            val processor =
+                                PoseBackendProcessor(
+                                    backend,
+                                    shouldShowInFrameLikelihood,
+                                    visualizeZ,
+                                    rescaleZ,
+                                    runClassification,
+                                    poseClassifierCache
+                                )
+                            // PoseProcessor is shared. Taking a use before the processor it
+                            // replaces gives its use back keeps a live landmarker loaded, and the
+                            // new listener is only set once that processor is stopped.
+                            if (useMediaPipe) {
+                                PoseProcessor.initPoseLandmarker(this)
+                            }
+                            cameraSource!!.setMachineLearningFrameProcessor(processor)
+                            processor.start()
+                        }
+
+                        else -> {
+                            Log.i(TAG, "Using Pose Detector with options $poseDetectorOptions")
+                            cameraSource!!.setMachineLearningFrameProcessor(
+                                PoseDetectorProcessor(
+                                    this,
+                                    poseDetectorOptions,
+                                    shouldShowInFrameLikelihood,
+                                    visualizeZ,
+                                    rescaleZ,
+                                    runClassification,
+                                    /* isStreamMode = */ true,
+                                    poseClassifierCache,
+                                    poseWarmUpService.takeDetector(poseDetectorOptions)
+                                )
+                            )
+                        }
+                    }
                 }
 
                 else -> Log.e(TAG, "Unknown model: $model")
@@ -139,21 +192,18 @@ class LivePreviewActivity :
      * again when the camera source is created.
      */
     private fun startCameraSource() {
-        if (cameraSource != null) {
-            try {
-                if (preview == null) {
-                    Log.d(TAG, "resume: Preview is null")
-                }
-                if (graphicOverlay == null) {
-                    Log.d(TAG, "resume: graphOverlay is null")
-                }
-                preview!!.start(cameraSource, graphicOverlay)
-            } catch (e: IOException) {
-                Log.e(TAG, "Unable to start camera source.", e)
-                cameraSource!!.release()
-                cameraSource = null
-            }
+        val cameraSource = cameraSource ?: return
+        if (preview == null) {
+            Log.d(TAG, "resume: Preview is null")
+            return
+        }
+        if (graphicOverlay == null) {
+            Log.d(TAG, "resume: graphOverlay is null")
         }
+        cameraSource.setTargetResolution(
+            PreferenceUtils.getCameraXTargetResolution(this, cameraSource.cameraFacing)
+        )
+        cameraSource.start(preview!!)
     }
 
     public override fun onResume() {
@@ -166,7 +216,7 @@ class LivePreviewActivity :
     /** Stops the camera. */
     override fun onPause() {
         super.onPause()
-        preview?.stop()
+        cameraSource?.stop()
     }
 
     public override fun onDestroy() {
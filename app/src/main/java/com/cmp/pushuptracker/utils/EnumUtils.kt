@@ -7,3 +7,7 @@ enum class PushupIllustrations {
 enum class Theme {
     DARK, LIGHT, SYSTEM
 }
+
+enum class WarmUpState {
+    IDLE, WARMING_UP, READY, FAILED
+}
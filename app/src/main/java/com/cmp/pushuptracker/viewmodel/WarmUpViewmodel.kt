@@ -0,0 +1,20 @@
+package com.cmp.pushuptracker.viewmodel
+
+import androidx.lifecycle.ViewModel
+import com.cmp.pushuptracker.mlKit.posedetector.PoseWarmUpService
+import com.cmp.pushuptracker.utils.WarmUpState
+import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.flow.StateFlow
+import javax.inject.Inject
+
+@HiltViewModel
+class WarmUpViewmodel @Inject constructor(
+    warmUpService: PoseWarmUpService
+) : ViewModel() {
+
+    val warmUpState: StateFlow<WarmUpState> = warmUpService.state
+
+    init {
+        warmUpService.warmUp()
+    }
+}
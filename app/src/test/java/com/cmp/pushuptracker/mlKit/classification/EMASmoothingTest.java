@@ -0,0 +1,172 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import org.junit.Test;
+
+/** Checks {@link EMASmoothing} against a direct recomputation over the window. */
+public class EMASmoothingTest {
+  private static final String[] CLASSES = {"ema_a", "ema_b", "ema_c"};
+  private static final int WINDOW_SIZE = 10;
+  private static final float ALPHA = 0.2f;
+  private static final long RESET_THRESHOLD_MS = 100;
+
+  private long nowMs = 1000;
+
+  @Test
+  public void getSmoothedResult_matchesRecomputation() {
+    Random random = new Random(7);
+    EMASmoothing smoothing = new EMASmoothing(WINDOW_SIZE, ALPHA, () -> nowMs);
+    Deque<ClassificationResult> window = new ArrayDeque<>();
+
+    for (int i = 0; i < 500; i++) {
+      // Mostly steady frames, sometimes a gap long enough to start over.
+      long stepMs = random.nextInt(20) == 0 ? RESET_THRESHOLD_MS + 1 : 30 + random.nextInt(40);
+      nowMs += stepMs;
+      if (stepMs > RESET_THRESHOLD_MS) {
+        window.clear();
+      }
+      ClassificationResult input = new ClassificationResult();
+      for (String className : CLASSES) {
+        if (random.nextInt(3) != 0) {
+          input.putClassConfidence(className, random.nextInt(11));
+        }
+      }
+      window.addFirst(input);
+      if (window.size() > WINDOW_SIZE) {
+        window.removeLast();
+      }
+
+      assertSameResult("frame " + i, smooth(window), smoothing.getSmoothedResult(input));
+    }
+  }
+
+  @Test
+  public void getSmoothedResult_dropsClassOnceOutOfWindow() {
+    EMASmoothing smoothing = new EMASmoothing(WINDOW_SIZE, ALPHA, () -> nowMs);
+    ClassificationResult seen = new ClassificationResult();
+    seen.putClassConfidence(CLASSES[0], 10);
+    ClassificationResult smoothed = smoothing.getSmoothedResult(seen);
+    assertEquals(10f, smoothed.getClassConfidence(CLASSES[0]), 1e-4f);
+
+    for (int i = 1; i < WINDOW_SIZE; i++) {
+      nowMs += 33;
+      smoothed = smoothing.getSmoothedResult(new ClassificationResult());
+      assertTrue(smoothed.getAllClasses().contains(CLASSES[0]));
+    }
+    // The class is in the oldest slot, weighted pow(1 - alpha, W - 1) of the newest.
+    double expected = 10 * Math.pow(1 - ALPHA, WINDOW_SIZE - 1) / weightSum(WINDOW_SIZE);
+    assertEquals((float) expected, smoothed.getClassConfidence(CLASSES[0]), 1e-4f);
+
+    nowMs += 33;
+    smoothed = smoothing.getSmoothedResult(new ClassificationResult());
+    assertFalse(smoothed.getAllClasses().contains(CLASSES[0]));
+  }
+
+  @Test
+  public void getSmoothedResult_resetsAfterGap() {
+    EMASmoothing smoothing = new EMASmoothing(WINDOW_SIZE, ALPHA, () -> nowMs);
+    ClassificationResult high = new ClassificationResult();
+    high.putClassConfidence(CLASSES[0], 10);
+    ClassificationResult low = new ClassificationResult();
+    low.putClassConfidence(CLASSES[0], 0);
+
+    smoothing.getSmoothedResult(high);
+    // A gap of exactly the threshold keeps the window.
+    nowMs += RESET_THRESHOLD_MS;
+    assertEquals((float) (10 * (1 - ALPHA) / weightSum(2)),
+        smoothing.getSmoothedResult(low).getClassConfidence(CLASSES[0]), 1e-4f);
+    // A longer one starts over.
+    nowMs += RESET_THRESHOLD_MS + 1;
+    assertEquals(0f, smoothing.getSmoothedResult(low).getClassConfidence(CLASSES[0]), 0f);
+  }
+
+  @Test
+  public void getSmoothedResult_keepsWindowAtThrottledFrameInterval() {
+    EMASmoothing smoothing = new EMASmoothing(WINDOW_SIZE, ALPHA, () -> nowMs);
+    smoothing.setFrameIntervalMs(150);
+    ClassificationResult high = new ClassificationResult();
+    high.putClassConfidence(CLASSES[0], 10);
+    ClassificationResult low = new ClassificationResult();
+    low.putClassConfidence(CLASSES[0], 0);
+
+    smoothing.getSmoothedResult(high);
+    // A frame one interval late, as the camera cadence allows, is still part of the stream.
+    nowMs += 150 + 33;
+    assertEquals((float) (10 * (1 - ALPHA) / weightSum(2)),
+        smoothing.getSmoothedResult(low).getClassConfidence(CLASSES[0]), 1e-4f);
+    // Beyond two intervals it starts over.
+    nowMs += 2 * 150 + 1;
+    assertEquals(0f, smoothing.getSmoothedResult(low).getClassConfidence(CLASSES[0]), 0f);
+
+    // Back at full rate the usual threshold applies again.
+    smoothing.setFrameIntervalMs(0);
+    smoothing.getSmoothedResult(high);
+    nowMs += RESET_THRESHOLD_MS + 1;
+    assertEquals(0f, smoothing.getSmoothedResult(low).getClassConfidence(CLASSES[0]), 0f);
+  }
+
+  @Test
+  public void getSmoothedResult_usesGivenTimestamp() {
+    EMASmoothing smoothing = new EMASmoothing(WINDOW_SIZE, ALPHA, () -> {
+      throw new AssertionError("clock read");
+    });
+    ClassificationResult high = new ClassificationResult();
+    high.putClassConfidence(CLASSES[0], 10);
+    ClassificationResult low = new ClassificationResult();
+    low.putClassConfidence(CLASSES[0], 0);
+
+    smoothing.getSmoothedResult(high, 1000);
+    assertEquals((float) (10 * (1 - ALPHA) / weightSum(2)),
+        smoothing.getSmoothedResult(low, 1050).getClassConfidence(CLASSES[0]), 1e-4f);
+    assertEquals(0f, smoothing.getSmoothedResult(low, 1200).getClassConfidence(CLASSES[0]), 0f);
+  }
+
+  /**
+   * Smooths the results in {@code window}, newest first, the straightforward way: every class in
+   * the window gets the weighted mean of its confidences, counting 0 where it's missing.
+   */
+  private static ClassificationResult smooth(Deque<ClassificationResult> window) {
+    ClassificationResult result = new ClassificationResult();
+    for (String className : CLASSES) {
+      boolean present = false;
+      double weightedSum = 0;
+      double factor = 1;
+      for (ClassificationResult input : window) {
+        present |= input.getAllClasses().contains(className);
+        weightedSum += factor * input.getClassConfidence(className);
+        factor *= 1 - ALPHA;
+      }
+      if (present) {
+        result.putClassConfidence(className, (float) (weightedSum / weightSum(window.size())));
+      }
+    }
+    return result;
+  }
+
+  private static double weightSum(int count) {
+    double sum = 0;
+    double factor = 1;
+    for (int i = 0; i < count; i++) {
+      sum += factor;
+      factor *= 1 - ALPHA;
+    }
+    return sum;
+  }
+
+  private static void assertSameResult(
+      String message, ClassificationResult expected, ClassificationResult actual) {
+    for (String className : CLASSES) {
+      assertEquals(message + ", " + className + " present",
+          expected.getAllClasses().contains(className),
+          actual.getAllClasses().contains(className));
+      assertEquals(message + ", " + className, expected.getClassConfidence(className),
+          actual.getClassConfidence(className), 1e-4f);
+    }
+  }
+}
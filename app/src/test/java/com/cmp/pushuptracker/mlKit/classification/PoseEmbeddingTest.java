@@ -0,0 +1,109 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.cmp.pushuptracker.pose.LandmarkFrame;
+import com.google.mlkit.vision.common.PointF3D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the flat embedding against the original list based one, {@link BaselinePoseEmbedding},
+ * and that the allocation free embedding of a {@link LandmarkFrame} is the same as the one of the
+ * same landmarks as a list.
+ */
+public class PoseEmbeddingTest {
+  private static final int NUM_POSES = 200;
+  // Normalized landmarks are within about 100 of the origin. The flat path scales in one step, the
+  // baseline in two, so the last bits may differ.
+  private static final float BASELINE_TOLERANCE = 1e-3f;
+
+  private final Random random = new Random(7);
+
+  @Test
+  public void getFlatPoseEmbedding_matchesBaseline() {
+    for (int i = 0; i < NUM_POSES; i++) {
+      List<PointF3D> pose = randomPose();
+      float[] expected = new float[PoseEmbedding.FLAT_EMBEDDING_SIZE];
+      PoseEmbedding.flatten(BaselinePoseEmbedding.getPoseEmbedding(pose), expected, 0);
+
+      assertArrayEquals(expected, PoseEmbedding.getFlatPoseEmbedding(pose), BASELINE_TOLERANCE);
+    }
+  }
+
+  @Test
+  public void getFlatPoseEmbedding_frameMatchesBaseline() {
+    float[] scratch = new float[PoseEmbedding.SCRATCH_SIZE];
+    float[] fromFrame = new float[PoseEmbedding.FLAT_EMBEDDING_SIZE];
+    LandmarkFrame frame = new LandmarkFrame();
+    for (int i = 0; i < NUM_POSES; i++) {
+      List<PointF3D> pose = randomPose();
+      for (int j = 0; j < pose.size(); j++) {
+        PointF3D point = pose.get(j);
+        frame.setLandmark(j, point.getX(), point.getY(), point.getZ(), 1f);
+      }
+      float[] expected = new float[PoseEmbedding.FLAT_EMBEDDING_SIZE];
+      PoseEmbedding.flatten(BaselinePoseEmbedding.getPoseEmbedding(pose), expected, 0);
+
+      PoseEmbedding.getFlatPoseEmbedding(frame, scratch, fromFrame);
+
+      assertArrayEquals(expected, fromFrame, BASELINE_TOLERANCE);
+    }
+  }
+
+  @Test
+  public void getFlatPoseEmbedding_frameMatchesList() {
+    // Shared across poses, like the classifier does, so stale values would show.
+    float[] scratch = new float[PoseEmbedding.SCRATCH_SIZE];
+    float[] fromFrame = new float[PoseEmbedding.FLAT_EMBEDDING_SIZE];
+    LandmarkFrame frame = new LandmarkFrame();
+    for (int i = 0; i < NUM_POSES; i++) {
+      List<PointF3D> pose = randomPose();
+      for (int j = 0; j < pose.size(); j++) {
+        PointF3D point = pose.get(j);
+        frame.setLandmark(j, point.getX(), point.getY(), point.getZ(), 1f);
+      }
+
+      PoseEmbedding.getFlatPoseEmbedding(frame, scratch, fromFrame);
+
+      assertArrayEquals(PoseEmbedding.getFlatPoseEmbedding(pose), fromFrame, 0f);
+    }
+  }
+
+  @Test
+  public void getFlatPoseEmbedding_leavesFrameUnchanged() {
+    List<PointF3D> pose = randomPose();
+    LandmarkFrame frame = new LandmarkFrame();
+    for (int j = 0; j < pose.size(); j++) {
+      PointF3D point = pose.get(j);
+      frame.setLandmark(j, point.getX(), point.getY(), point.getZ(), 1f);
+    }
+
+    PoseEmbedding.getFlatPoseEmbedding(
+        frame,
+        new float[PoseEmbedding.SCRATCH_SIZE],
+        new float[PoseEmbedding.FLAT_EMBEDDING_SIZE]);
+
+    for (int j = 0; j < pose.size(); j++) {
+      assertEquals(pose.get(j).getX(), frame.getX(j), 0f);
+      assertEquals(pose.get(j).getY(), frame.getY(j), 0f);
+      assertEquals(pose.get(j).getZ(), frame.getZ(j), 0f);
+    }
+  }
+
+  /** Returns random landmarks at pixel scale. */
+  private List<PointF3D> randomPose() {
+    List<PointF3D> pose = new ArrayList<>(LandmarkFrame.NUM_LANDMARKS);
+    for (int i = 0; i < LandmarkFrame.NUM_LANDMARKS; i++) {
+      pose.add(
+          PointF3D.from(
+              random.nextFloat() * 480f,
+              random.nextFloat() * 640f,
+              (random.nextFloat() - 0.5f) * 200f));
+    }
+    return pose;
+  }
+}
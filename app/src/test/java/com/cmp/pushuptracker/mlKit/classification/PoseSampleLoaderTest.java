@@ -0,0 +1,59 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static com.cmp.pushuptracker.mlKit.classification.PoseEmbedding.FLAT_EMBEDDING_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/** Reads binary pose samples laid out the way PoseSampleEncoder in buildSrc writes them. */
+public class PoseSampleLoaderTest {
+  private static final String[] CLASS_NAMES = {"loader_test_up", "loader_test_down_"};
+  private static final int[] SAMPLE_CLASSES = {1, 0, 1};
+
+  @Test
+  public void read_packsEmbeddingsInFileOrder() {
+    float[] embeddings = new float[SAMPLE_CLASSES.length * FLAT_EMBEDDING_SIZE];
+    for (int i = 0; i < embeddings.length; i++) {
+      embeddings[i] = i * 0.5f - 7;
+    }
+
+    PackedPoseSamples samples = PoseSampleLoader.read(encode(SAMPLE_CLASSES.length, embeddings));
+
+    assertEquals(SAMPLE_CLASSES.length, samples.size());
+    assertArrayEquals(embeddings, samples.embeddings, 0f);
+    for (int i = 0; i < SAMPLE_CLASSES.length; i++) {
+      assertEquals(CLASS_NAMES[SAMPLE_CLASSES[i]], ClassRegistry.nameOf(samples.classIds[i]));
+    }
+  }
+
+  @Test
+  public void read_rejectsCountBeyondBuffer() {
+    float[] embeddings = new float[SAMPLE_CLASSES.length * FLAT_EMBEDDING_SIZE];
+    assertNull(PoseSampleLoader.read(encode(SAMPLE_CLASSES.length + 1, embeddings)));
+  }
+
+  /** Encodes the test samples, claiming {@code sampleCount} of them. */
+  private static ByteBuffer encode(int sampleCount, float[] embeddings) {
+    ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(0x50545053).putInt(1).putInt(FLAT_EMBEDDING_SIZE).putInt(CLASS_NAMES.length);
+    for (String className : CLASS_NAMES) {
+      byte[] bytes = className.getBytes(StandardCharsets.UTF_8);
+      buffer.putInt(bytes.length).put(bytes);
+      buffer.position((buffer.position() + 3) & ~3);
+    }
+    buffer.putInt(sampleCount);
+    for (int classId : SAMPLE_CLASSES) {
+      buffer.putInt(classId);
+    }
+    for (float value : embeddings) {
+      buffer.putFloat(value);
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,99 @@
+package com.cmp.pushuptracker.mlKit.classification;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cmp.pushuptracker.pose.LandmarkFrame;
+import com.google.mlkit.vision.common.PointF3D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that classifying through a {@link VantagePointTree} gives the same results as the linear
+ * scan.
+ *
+ * <p>Landmarks are random floats, so two samples at exactly the same distance from a query are
+ * improbable enough to ignore; on a tie the two paths may keep different samples of equal rank.
+ */
+public class VantagePointTreeTest {
+  private static final String[] CLASSES = {"vpt_a", "vpt_b", "vpt_c"};
+  // Above the sample count from which the index is meant to pay off.
+  private static final int NUM_SAMPLES = 1500;
+  private static final int NUM_QUERIES = 300;
+
+  private final Random random = new Random(42);
+
+  @Test
+  public void classify_indexMatchesScan() {
+    List<PoseSample> samples = new ArrayList<>();
+    List<List<PointF3D>> poses = new ArrayList<>();
+    for (int i = 0; i < NUM_SAMPLES; i++) {
+      List<PointF3D> pose = randomPose();
+      poses.add(pose);
+      samples.add(new PoseSample("sample" + i, CLASSES[i % CLASSES.length], pose));
+    }
+    PoseClassifier scan = new PoseClassifier.Builder(samples).setIndexEnabled(false).build();
+    PoseClassifier indexed = new PoseClassifier.Builder(samples).setIndexEnabled(true).build();
+    PoseClassifier scanNoPruning = new PoseClassifier.Builder(samples)
+        .setPruningEnabled(false)
+        .setIndexEnabled(false)
+        .build();
+
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      List<PointF3D> query;
+      switch (i % 3) {
+        case 0:
+          query = randomPose();
+          break;
+        case 1:
+          query = near(poses.get(random.nextInt(NUM_SAMPLES)));
+          break;
+        default:
+          // Matches a sample only through the classifier's mirrored comparison.
+          query = mirrored(near(poses.get(random.nextInt(NUM_SAMPLES))));
+          break;
+      }
+      ClassificationResult expected = scanNoPruning.classify(query);
+      assertSameResult("scan, query " + i, expected, scan.classify(query));
+      assertSameResult("index, query " + i, expected, indexed.classify(query));
+    }
+  }
+
+  private List<PointF3D> randomPose() {
+    List<PointF3D> pose = new ArrayList<>();
+    for (int i = 0; i < LandmarkFrame.NUM_LANDMARKS; i++) {
+      pose.add(PointF3D.from(
+          random.nextFloat() * 400, random.nextFloat() * 400, random.nextFloat() * 200 - 100));
+    }
+    return pose;
+  }
+
+  /** Returns {@code pose} with a few pixels of noise on every landmark. */
+  private List<PointF3D> near(List<PointF3D> pose) {
+    List<PointF3D> result = new ArrayList<>();
+    for (PointF3D point : pose) {
+      result.add(PointF3D.from(
+          point.getX() + (random.nextFloat() - 0.5f) * 10,
+          point.getY() + (random.nextFloat() - 0.5f) * 10,
+          point.getZ() + (random.nextFloat() - 0.5f) * 10));
+    }
+    return result;
+  }
+
+  private static List<PointF3D> mirrored(List<PointF3D> pose) {
+    List<PointF3D> result = new ArrayList<>();
+    for (PointF3D point : pose) {
+      result.add(PointF3D.from(400 - point.getX(), point.getY(), point.getZ()));
+    }
+    return result;
+  }
+
+  private static void assertSameResult(
+      String message, ClassificationResult expected, ClassificationResult actual) {
+    for (String className : CLASSES) {
+      assertEquals(message + ", " + className, expected.getClassConfidence(className),
+          actual.getClassConfidence(className), 0f);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Checks the hysteresis of {@link FrameRateGovernor} on a fake clock. */
+public class FrameRateGovernorTest {
+  private static final long FRAME_MS = 100;
+  // Latencies above, between and below the governor's thresholds.
+  private static final long HIGH_LATENCY_MS = 150;
+  private static final long MEDIUM_LATENCY_MS = 90;
+  private static final long LOW_LATENCY_MS = 30;
+
+  private long nowMs;
+  private final FrameRateGovernor governor = new FrameRateGovernor(() -> nowMs);
+
+  @Test
+  public void startsWithoutThrottling() {
+    assertFalse(governor.isAccurateModelEnabled());
+    assertEquals(0, governor.getFrameIntervalMs());
+
+    governor.setAccurateModelAllowed(true);
+    assertTrue(governor.isAccurateModelEnabled());
+  }
+
+  @Test
+  public void stepsDownOnlyAfterSustainedPressure() {
+    // The first window starts the pressure, three more seconds of it step down.
+    runFrames(3900, HIGH_LATENCY_MS);
+    assertEquals(0, governor.getFrameIntervalMs());
+    runFrames(100, HIGH_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+
+    // Each further step takes another three seconds.
+    runFrames(2900, HIGH_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+    runFrames(100, HIGH_LATENCY_MS);
+    assertEquals(100, governor.getFrameIntervalMs());
+  }
+
+  @Test
+  public void interruptedPressureDoesNotStepDown() {
+    for (int i = 0; i < 5; i++) {
+      runFrames(2000, HIGH_LATENCY_MS);
+      runFrames(1000, MEDIUM_LATENCY_MS);
+    }
+    assertEquals(0, governor.getFrameIntervalMs());
+  }
+
+  @Test
+  public void stepsUpOnlyAfterLongHeadroom() {
+    runFrames(4000, HIGH_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+
+    // Latency between the thresholds holds the level either way.
+    runFrames(30000, MEDIUM_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+
+    // Headroom starts counting at the first window with it and steps up 15 seconds later.
+    runFrames(15900, LOW_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+    runFrames(100, LOW_LATENCY_MS);
+    assertEquals(0, governor.getFrameIntervalMs());
+  }
+
+  @Test
+  public void accurateModelIsFirstToGo() {
+    governor.setAccurateModelAllowed(true);
+    runFrames(4000, HIGH_LATENCY_MS);
+    assertFalse(governor.isAccurateModelEnabled());
+    assertEquals(0, governor.getFrameIntervalMs());
+
+    runFrames(16000, LOW_LATENCY_MS);
+    assertTrue(governor.isAccurateModelEnabled());
+  }
+
+  @Test
+  public void temperatureRiseStepsDown() {
+    governor.onTemperatureRise(9f);
+    runFrames(4000, LOW_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+
+    // A rise between the thresholds doesn't count as headroom, and NaN keeps the last reading.
+    governor.onTemperatureRise(6f);
+    governor.onTemperatureRise(Float.NaN);
+    runFrames(30000, LOW_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+
+    governor.onTemperatureRise(1f);
+    runFrames(16000, LOW_LATENCY_MS);
+    assertEquals(0, governor.getFrameIntervalMs());
+  }
+
+  @Test
+  public void droppedFramesStepDown() {
+    for (int elapsedMs = 0; elapsedMs < 4000; elapsedMs += FRAME_MS) {
+      nowMs += FRAME_MS;
+      governor.onFrameProcessed(LOW_LATENCY_MS);
+      governor.onFrameDropped();
+    }
+    assertEquals(66, governor.getFrameIntervalMs());
+  }
+
+  @Test
+  public void isFrameDue_keepsInterval() {
+    runFrames(4000, HIGH_LATENCY_MS);
+    assertEquals(66, governor.getFrameIntervalMs());
+
+    assertTrue(governor.isFrameDue());
+    governor.onFrameAdmitted();
+    nowMs += 65;
+    assertFalse(governor.isFrameDue());
+    nowMs += 1;
+    assertTrue(governor.isFrameDue());
+  }
+
+  @Test
+  public void isFrameDue_intervalStartsAtAdmittedFrame() {
+    runFrames(4000, HIGH_LATENCY_MS);
+    governor.onFrameAdmitted();
+    nowMs += 66;
+    // Due, but not admitted, e.g. because the detector is busy.
+    assertTrue(governor.isFrameDue());
+    nowMs += 10;
+    assertTrue(governor.isFrameDue());
+  }
+
+  /** Advances the clock by {@code durationMs}, analyzing a frame every {@link #FRAME_MS}. */
+  private void runFrames(long durationMs, long latencyMs) {
+    for (long elapsedMs = 0; elapsedMs < durationMs; elapsedMs += FRAME_MS) {
+      nowMs += FRAME_MS;
+      governor.onFrameProcessed(latencyMs);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+
+/** Checks when {@link MotionGate} lets frames through, on a fake clock. */
+public class MotionGateTest {
+  private static final int WIDTH = 160;
+  private static final int HEIGHT = 120;
+  private static final long FRAME_MS = 100;
+  private static final long SETTLE_MS = 500;
+  private static final long STATIC_DETECT_INTERVAL_MS = 1000;
+
+  private long nowMs;
+  private final MotionGate gate = new MotionGate(() -> nowMs);
+
+  @Test
+  public void stillScene_settlesThenAnalyzesOncePerInterval() {
+    byte[] still = frame(100, 0);
+    // Everything is analyzed until the scene has been still for SETTLE_MS.
+    for (; nowMs < SETTLE_MS; nowMs += FRAME_MS) {
+      assertTrue("t=" + nowMs, shouldDetect(still));
+    }
+    long lastDetectMs = nowMs - FRAME_MS;
+    // Then only one frame per interval, counted from the last analyzed one.
+    for (; nowMs < lastDetectMs + STATIC_DETECT_INTERVAL_MS; nowMs += FRAME_MS) {
+      assertFalse("t=" + nowMs, shouldDetect(still));
+    }
+    assertTrue(shouldDetect(still));
+    nowMs += FRAME_MS;
+    assertFalse(shouldDetect(still));
+    nowMs += STATIC_DETECT_INTERVAL_MS - FRAME_MS;
+    assertTrue(shouldDetect(still));
+  }
+
+  @Test
+  public void motion_rearmsImmediately() {
+    byte[] still = frame(100, 0);
+    settle(still);
+    assertFalse(shouldDetect(still));
+
+    byte[] moved = frame(100, 200);
+    nowMs += FRAME_MS;
+    assertTrue(shouldDetect(moved));
+    // The scene has to settle again before frames are skipped.
+    for (long settleEndMs = nowMs + SETTLE_MS; nowMs + FRAME_MS < settleEndMs; ) {
+      nowMs += FRAME_MS;
+      assertTrue("t=" + nowMs, shouldDetect(moved));
+    }
+    nowMs += FRAME_MS;
+    assertFalse(shouldDetect(moved));
+  }
+
+  @Test
+  public void sensorNoise_isNotMotion() {
+    settle(frame(100, 0));
+    for (int i = 0; i < 5; i++) {
+      nowMs += FRAME_MS;
+      assertFalse(shouldDetect(frame(100 + (i % 2 == 0 ? 20 : -20), 0)));
+    }
+  }
+
+  @Test
+  public void slowMotion_addsUp() {
+    settle(frame(100, 0));
+    // Each step is below the motion threshold against the previous frame, but the frames are
+    // compared against the last analyzed one.
+    int detected = -1;
+    for (int step = 1; step <= 5 && detected < 0; step++) {
+      nowMs += FRAME_MS;
+      if (shouldDetect(frame(100, 15 * step))) {
+        detected = step;
+      }
+    }
+    assertEquals(2, detected);
+  }
+
+  @Test
+  public void droppedFrame_keepsPeriodicRefresh() {
+    byte[] still = frame(100, 0);
+    settle(still);
+    nowMs += STATIC_DETECT_INTERVAL_MS;
+    // Worth analyzing, but dropped further on, e.g. because the detector is busy.
+    assertTrue(isWorthDetecting(still));
+    nowMs += FRAME_MS;
+    assertTrue(shouldDetect(still));
+  }
+
+  @Test
+  public void droppedFrame_keepsReference() {
+    settle(frame(100, 0));
+    nowMs += FRAME_MS;
+    // A moving frame that never gets analyzed doesn't become the reference, so the scene is still
+    // moving compared with the last analyzed frame.
+    assertTrue(isWorthDetecting(frame(100, 200)));
+    nowMs += SETTLE_MS;
+    assertTrue(shouldDetect(frame(100, 200)));
+  }
+
+  @Test
+  public void reset_analyzesNextFrame() {
+    byte[] still = frame(100, 0);
+    settle(still);
+    assertFalse(shouldDetect(still));
+    gate.reset();
+    assertTrue(shouldDetect(still));
+  }
+
+  @Test
+  public void rgbaFrame_readsFirstChannel() {
+    int rowStride = WIDTH * 4 + 8;
+    byte[] still = new byte[rowStride * HEIGHT];
+    settleStrided(still, rowStride);
+    // Changing the other channels isn't motion.
+    byte[] tinted = still.clone();
+    for (int i = 0; i < tinted.length; i++) {
+      if (i % 4 != 0) {
+        tinted[i] = (byte) 200;
+      }
+    }
+    nowMs += FRAME_MS;
+    assertFalse(gate.isWorthDetecting(ByteBuffer.wrap(tinted), WIDTH, HEIGHT, rowStride, 4));
+  }
+
+  /** Feeds {@code still} until the gate starts skipping it. */
+  private void settle(byte[] still) {
+    for (long endMs = nowMs + SETTLE_MS; nowMs <= endMs; nowMs += FRAME_MS) {
+      shouldDetect(still);
+    }
+  }
+
+  private void settleStrided(byte[] still, int rowStride) {
+    for (long endMs = nowMs + SETTLE_MS; nowMs <= endMs; nowMs += FRAME_MS) {
+      if (gate.isWorthDetecting(ByteBuffer.wrap(still), WIDTH, HEIGHT, rowStride, 4)) {
+        gate.onDetecting();
+      }
+    }
+  }
+
+  /** Checks {@code frame} and, if it's worth it, analyzes it. */
+  private boolean shouldDetect(byte[] frame) {
+    if (!isWorthDetecting(frame)) {
+      return false;
+    }
+    gate.onDetecting();
+    return true;
+  }
+
+  private boolean isWorthDetecting(byte[] frame) {
+    return gate.isWorthDetecting(ByteBuffer.wrap(frame), WIDTH, HEIGHT, WIDTH, 1);
+  }
+
+  /**
+   * Returns a uniform frame of {@code luma} with a {@code blockDelta} brighter block over the top
+   * left quarter, enough of the frame to count as motion when it changes.
+   */
+  private static byte[] frame(int luma, int blockDelta) {
+    byte[] frame = new byte[WIDTH * HEIGHT];
+    Arrays.fill(frame, (byte) luma);
+    for (int y = 0; y < HEIGHT / 2; y++) {
+      Arrays.fill(frame, y * WIDTH, y * WIDTH + WIDTH / 2, (byte) Math.min(255, luma + blockDelta));
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,73 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+/**
+ * Straightforward BT.601 limited range YUV_420_888 to ARGB conversion, one output pixel at a time
+ * in floating point, to check {@link YuvToRgbConverter} against.
+ */
+final class ReferenceYuvConverter {
+  private ReferenceYuvConverter() {}
+
+  /**
+   * Returns the ARGB pixels of a frame given as YUV_420_888 planes, rotated clockwise by {@code
+   * rotationDegrees} and then mirrored horizontally if {@code flipX} is set.
+   */
+  static int[] toArgb(
+      byte[] yPlane,
+      int yRowStride,
+      byte[] uPlane,
+      byte[] vPlane,
+      int uvRowStride,
+      int uvPixelStride,
+      int width,
+      int height,
+      int rotationDegrees,
+      boolean flipX) {
+    boolean transposed = rotationDegrees == 90 || rotationDegrees == 270;
+    int outWidth = transposed ? height : width;
+    int outHeight = transposed ? width : height;
+    int[] out = new int[width * height];
+    for (int outY = 0; outY < outHeight; outY++) {
+      for (int outX = 0; outX < outWidth; outX++) {
+        // Undo the mirroring, then the rotation, to find the source pixel.
+        int rotatedX = flipX ? outWidth - 1 - outX : outX;
+        int x;
+        int y;
+        switch (rotationDegrees) {
+          case 90:
+            x = outY;
+            y = height - 1 - rotatedX;
+            break;
+          case 180:
+            x = width - 1 - rotatedX;
+            y = height - 1 - outY;
+            break;
+          case 270:
+            x = width - 1 - outY;
+            y = rotatedX;
+            break;
+          default:
+            x = rotatedX;
+            y = outY;
+        }
+        int luma = yPlane[y * yRowStride + x] & 0xff;
+        int chromaIndex = (y / 2) * uvRowStride + (x / 2) * uvPixelStride;
+        out[outY * outWidth + outX] =
+            toArgb(luma, uPlane[chromaIndex] & 0xff, vPlane[chromaIndex] & 0xff);
+      }
+    }
+    return out;
+  }
+
+  private static int toArgb(int y, int u, int v) {
+    // Luma below the nominal black level is clamped to black.
+    float scaledY = 1.164f * Math.max(0, y - 16);
+    int r = clamp(scaledY + 1.596f * (v - 128));
+    int g = clamp(scaledY - 0.813f * (v - 128) - 0.391f * (u - 128));
+    int b = clamp(scaledY + 2.018f * (u - 128));
+    return 0xff000000 | (r << 16) | (g << 8) | b;
+  }
+
+  private static int clamp(float value) {
+    return Math.max(0, Math.min(255, Math.round(value)));
+  }
+}
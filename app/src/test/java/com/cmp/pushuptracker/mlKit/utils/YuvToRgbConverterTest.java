@@ -0,0 +1,113 @@
+package com.cmp.pushuptracker.mlKit.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks {@link YuvToRgbConverter} against {@link ReferenceYuvConverter}, for every rotation and
+ * mirroring and for the plane layouts cameras produce.
+ */
+public class YuvToRgbConverterTest {
+  // Non-square, so swapped axes show up.
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 6;
+  // The fixed point coefficients may round a channel differently than the reference.
+  private static final int MAX_CHANNEL_ERROR = 2;
+
+  private final Random random = new Random(3);
+
+  @Test
+  public void nv21Planes() {
+    // U and V share one buffer, V first, as NV21 with no row padding.
+    checkAllOrientations(WIDTH, /* uvRowStride= */ WIDTH, /* uvPixelStride= */ 2, true);
+  }
+
+  @Test
+  public void interleavedPlanes_oddRowStride() {
+    checkAllOrientations(WIDTH + 3, /* uvRowStride= */ WIDTH + 5, /* uvPixelStride= */ 2, false);
+  }
+
+  @Test
+  public void planarPlanes_oddRowStride() {
+    checkAllOrientations(
+        WIDTH + 1, /* uvRowStride= */ WIDTH / 2 + 3, /* uvPixelStride= */ 1, false);
+  }
+
+  @Test
+  public void oddPixelStride() {
+    checkAllOrientations(WIDTH + 7, /* uvRowStride= */ 3 * WIDTH / 2 + 1, /* uvPixelStride= */ 3,
+        false);
+  }
+
+  @Test
+  public void rotatedSize() {
+    assertEquals(HEIGHT, YuvToRgbConverter.getRotatedWidth(WIDTH, HEIGHT, 90));
+    assertEquals(WIDTH, YuvToRgbConverter.getRotatedHeight(WIDTH, HEIGHT, 270));
+    assertEquals(WIDTH, YuvToRgbConverter.getRotatedWidth(WIDTH, HEIGHT, 180));
+    assertEquals(HEIGHT, YuvToRgbConverter.getRotatedHeight(WIDTH, HEIGHT, 0));
+  }
+
+  private void checkAllOrientations(
+      int yRowStride, int uvRowStride, int uvPixelStride, boolean sharedChroma) {
+    byte[] yPlane = randomPlane(yRowStride, 1, WIDTH, HEIGHT);
+    byte[] uPlane;
+    byte[] vPlane;
+    ByteBuffer uBuffer;
+    ByteBuffer vBuffer;
+    if (sharedChroma) {
+      // One VU buffer, exposed as a V plane from its start and a U plane from one byte in.
+      byte[] vu = new byte[uvRowStride * HEIGHT / 2];
+      random.nextBytes(vu);
+      vPlane = vu;
+      uPlane = new byte[vu.length - 1];
+      System.arraycopy(vu, 1, uPlane, 0, uPlane.length);
+      vBuffer = ByteBuffer.wrap(vu, 0, vu.length - 1).slice();
+      uBuffer = ByteBuffer.wrap(vu, 1, vu.length - 1).slice();
+    } else {
+      uPlane = randomPlane(uvRowStride, uvPixelStride, WIDTH / 2, HEIGHT / 2);
+      vPlane = randomPlane(uvRowStride, uvPixelStride, WIDTH / 2, HEIGHT / 2);
+      uBuffer = ByteBuffer.wrap(uPlane);
+      vBuffer = ByteBuffer.wrap(vPlane);
+    }
+
+    byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+    YuvToRgbConverter.yuv420ToNv21(ByteBuffer.wrap(yPlane), yRowStride, 1, uBuffer, vBuffer,
+        uvRowStride, uvPixelStride, WIDTH, HEIGHT, nv21);
+
+    int[] actual = new int[WIDTH * HEIGHT];
+    for (int rotation = 0; rotation < 360; rotation += 90) {
+      for (boolean flipX : new boolean[] {false, true}) {
+        YuvToRgbConverter.nv21ToArgb(nv21, WIDTH, HEIGHT, rotation, flipX, actual);
+        int[] expected = ReferenceYuvConverter.toArgb(yPlane, yRowStride, uPlane, vPlane,
+            uvRowStride, uvPixelStride, WIDTH, HEIGHT, rotation, flipX);
+        for (int i = 0; i < expected.length; i++) {
+          assertPixel("rotation " + rotation + ", flipX " + flipX + ", pixel " + i,
+              expected[i], actual[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a plane of random values whose last row ends right after its last value, as camera
+   * buffers do.
+   */
+  private byte[] randomPlane(int rowStride, int pixelStride, int columns, int rows) {
+    byte[] plane = new byte[(rows - 1) * rowStride + (columns - 1) * pixelStride + 1];
+    random.nextBytes(plane);
+    return plane;
+  }
+
+  private static void assertPixel(String message, int expected, int actual) {
+    assertEquals(message + ", alpha", expected >>> 24, actual >>> 24);
+    for (int shift = 0; shift < 24; shift += 8) {
+      int error = Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff));
+      assertTrue(message + String.format(": expected %08x, was %08x", expected, actual),
+          error <= MAX_CHANNEL_ERROR);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.cmp.pushuptracker.pose;
+
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_ELBOW;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_HIP;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_KNEE;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_SHOULDER;
+import static com.google.mlkit.vision.pose.PoseLandmark.LEFT_WRIST;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Counts simulated push-ups, seen from the left side: the elbow goes from 170 degrees down to 75
+ * and back once per rep, with the body straight or, for movements that aren't push-ups, bent at
+ * the hip. Frames come at a roughly steady rate with some jitter, as from a camera.
+ */
+public class AngleRepCounterTest {
+  private static final int NUM_REPS = 10;
+  private static final double REP_SECONDS = 1.2;
+  private static final double STRAIGHT_ARM_DEGREES = 170;
+  private static final double BOTTOM_ARM_DEGREES = 75;
+  // Length of the upper arm and forearm, in pixels at scale 1.
+  private static final double ARM_LENGTH = 30;
+
+  @Test
+  public void addFrame_countsEveryRep_atAnyFrameRateAndScale() {
+    for (double fps : new double[] {30, 15, 10}) {
+      for (double scale : new double[] {0.5, 3}) {
+        assertEquals(
+            "fps " + fps + ", scale " + scale,
+            NUM_REPS,
+            countReps(fps, scale, /* noise= */ 0, /* bentHips= */ false, /* seed= */ 1));
+      }
+    }
+  }
+
+  @Test
+  public void addFrame_countsEveryRep_withNoisyLandmarks() {
+    for (double fps : new double[] {30, 15, 10}) {
+      for (double scale : new double[] {0.5, 3}) {
+        assertEquals(
+            "fps " + fps + ", scale " + scale,
+            NUM_REPS,
+            countReps(fps, scale, /* noise= */ 1.5, /* bentHips= */ false, /* seed= */ 3));
+      }
+    }
+  }
+
+  @Test
+  public void addFrame_ignoresReps_withBentHips() {
+    for (double fps : new double[] {30, 15, 10}) {
+      for (double scale : new double[] {0.5, 3}) {
+        assertEquals(
+            "fps " + fps + ", scale " + scale,
+            0,
+            countReps(fps, scale, /* noise= */ 0, /* bentHips= */ true, /* seed= */ 2));
+      }
+    }
+  }
+
+  @Test
+  public void addFrame_ignoresFramesWithoutPose() {
+    AngleRepCounter counter = new AngleRepCounter();
+    LandmarkFrame frame = new LandmarkFrame();
+    Random random = new Random(4);
+    setPose(frame, STRAIGHT_ARM_DEGREES, 1, false, random, 0);
+    counter.addFrame(frame);
+    setPose(frame, BOTTOM_ARM_DEGREES, 1, false, random, 0);
+    counter.addFrame(frame);
+
+    frame.clear();
+    assertEquals(0, counter.addFrame(frame));
+    assertEquals(AngleRepCounter.Phase.DOWN, counter.getPhase());
+
+    setPose(frame, STRAIGHT_ARM_DEGREES, 1, false, random, 0);
+    assertEquals(1, counter.addFrame(frame));
+  }
+
+  /**
+   * Feeds {@link #NUM_REPS} push-ups followed by half a second of holding the top to a new counter,
+   * and returns its count. {@code noise} is the standard deviation of landmark positions at scale
+   * 1, in pixels.
+   */
+  private static int countReps(
+      double fps, double scale, double noise, boolean bentHips, long seed) {
+    Random random = new Random(seed);
+    AngleRepCounter counter = new AngleRepCounter();
+    LandmarkFrame frame = new LandmarkFrame();
+    double endSeconds = NUM_REPS * REP_SECONDS;
+    for (double t = 0; t < endSeconds + 0.5; t += 1 / fps + random.nextDouble() * 0.01) {
+      double elbowAngle = STRAIGHT_ARM_DEGREES;
+      if (t < endSeconds) {
+        double phase = (t % REP_SECONDS) / REP_SECONDS;
+        elbowAngle -= (STRAIGHT_ARM_DEGREES - BOTTOM_ARM_DEGREES)
+            * (0.5 - 0.5 * Math.cos(2 * Math.PI * phase));
+      }
+      frame.clear();
+      setPose(frame, elbowAngle, scale, bentHips, random, noise * scale);
+      frame.setTimestampMs((long) (t * 1000));
+      counter.addFrame(frame);
+    }
+    return counter.getNumRepeats();
+  }
+
+  /**
+   * Sets a side view pose with the left arm bent at {@code elbowAngle} degrees. The other
+   * landmarks are there but barely visible, as a detector reports the far side.
+   */
+  private static void setPose(
+      LandmarkFrame frame,
+      double elbowAngle,
+      double scale,
+      boolean bentHips,
+      Random random,
+      double noise) {
+    for (int i = 0; i < LandmarkFrame.NUM_LANDMARKS; i++) {
+      frame.setLandmark(i, 0, 0, 0, 0.1f);
+    }
+    double armLength = ARM_LENGTH * scale;
+    double shoulderX = 200;
+    double shoulderY = 200;
+    double elbowX = shoulderX + armLength * Math.cos(Math.toRadians(60));
+    double elbowY = shoulderY + armLength * Math.sin(Math.toRadians(60));
+    double forearmDirection = Math.toRadians(60 + 180 - elbowAngle);
+    double wristX = elbowX + armLength * Math.cos(forearmDirection);
+    double wristY = elbowY + armLength * Math.sin(forearmDirection);
+    double hipX = shoulderX + 80 * scale;
+    double hipY = shoulderY + (bentHips ? 60 : 5) * scale;
+    double kneeX = hipX + 60 * scale;
+    double kneeY = hipY + (bentHips ? -40 : 5) * scale;
+    setVisible(frame, LEFT_SHOULDER, shoulderX, shoulderY, random, noise);
+    setVisible(frame, LEFT_ELBOW, elbowX, elbowY, random, noise);
+    setVisible(frame, LEFT_WRIST, wristX, wristY, random, noise);
+    setVisible(frame, LEFT_HIP, hipX, hipY, random, noise);
+    setVisible(frame, LEFT_KNEE, kneeX, kneeY, random, noise);
+  }
+
+  private static void setVisible(
+      LandmarkFrame frame, int landmark, double x, double y, Random random, double noise) {
+    frame.setLandmark(
+        landmark,
+        (float) (x + random.nextGaussian() * noise),
+        (float) (y + random.nextGaussian() * noise),
+        0,
+        0.9f);
+  }
+}
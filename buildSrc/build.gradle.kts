@@ -0,0 +1,30 @@
+plugins {
+    `java-library`
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    implementation(gradleApi())
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            // The pose samples encoder computes embeddings with the app's own code, which has no
+            // dependencies, so the precomputed asset can't drift from what the app computes.
+            srcDir("../app/src/main/java")
+            include(
+                "com/cmp/pushuptracker/gradle/**",
+                "com/cmp/pushuptracker/mlKit/classification/FlatPoseEmbedding.java"
+            )
+        }
+    }
+}
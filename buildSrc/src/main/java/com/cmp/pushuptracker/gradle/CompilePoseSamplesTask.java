@@ -0,0 +1,73 @@
+package com.cmp.pushuptracker.gradle;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Precomputes the embeddings of the pose samples csv into a binary asset, so the app can map it
+ * instead of parsing the csv and normalizing every sample on the first classified frame.
+ *
+ * <p>Writes nothing when there is no csv; the app then falls back to whatever csv it finds.
+ */
+@CacheableTask
+public abstract class CompilePoseSamplesTask extends DefaultTask {
+  @Optional
+  @InputFile
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract RegularFileProperty getCsvFile();
+
+  /** Path of the binary file relative to the output directory, e.g. "pose/samples.bin". */
+  @Input
+  public abstract Property<String> getOutputPath();
+
+  @OutputDirectory
+  public abstract DirectoryProperty getOutputDirectory();
+
+  @Inject
+  protected abstract FileSystemOperations getFileSystemOperations();
+
+  @TaskAction
+  public void compile() throws IOException {
+    File outputDirectory = getOutputDirectory().get().getAsFile();
+    getFileSystemOperations().delete(spec -> spec.delete(outputDirectory));
+    Files.createDirectories(outputDirectory.toPath());
+    if (!getCsvFile().isPresent()) {
+      getLogger().info("No pose samples csv, skipping.");
+      return;
+    }
+
+    PoseSampleEncoder encoder = new PoseSampleEncoder();
+    try (BufferedReader reader =
+        Files.newBufferedReader(getCsvFile().get().getAsFile().toPath(), StandardCharsets.UTF_8)) {
+      encoder.addAll(reader, ",");
+    }
+    if (encoder.getSkippedLines() > 0) {
+      getLogger().warn("Skipped {} invalid pose sample lines.", encoder.getSkippedLines());
+    }
+
+    File output = new File(outputDirectory, getOutputPath().get());
+    Files.createDirectories(output.getParentFile().toPath());
+    try (OutputStream stream = Files.newOutputStream(output.toPath())) {
+      encoder.writeTo(stream);
+    }
+    getLogger().info("Encoded {} pose samples into {}.", encoder.getSampleCount(), output);
+  }
+}
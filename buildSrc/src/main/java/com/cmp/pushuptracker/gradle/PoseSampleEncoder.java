@@ -0,0 +1,118 @@
+package com.cmp.pushuptracker.gradle;
+
+import com.cmp.pushuptracker.mlKit.classification.FlatPoseEmbedding;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes pose samples csv lines into the binary format read by {@code PoseSampleLoader} in the
+ * app.
+ *
+ * <p>Layout, little-endian: magic, format version, embedding size, class count, then each class
+ * name as a byte length followed by UTF-8 bytes padded to 4 bytes, then sample count, one class id
+ * per sample and finally every sample's flat embedding back to back.
+ *
+ * <p>The embeddings come from the app's own {@link FlatPoseEmbedding}, which the build compiles
+ * from the app sources, so they are exactly what the app computes from the csv. Bump {@link
+ * #FORMAT_VERSION} here and in {@code PoseSampleLoader} whenever the format or the math changes.
+ */
+final class PoseSampleEncoder {
+  static final int MAGIC = 0x50545053;
+  static final int FORMAT_VERSION = 1;
+
+  private static final int NUM_LANDMARKS = FlatPoseEmbedding.NUM_LANDMARKS;
+  private static final int NUM_DIMS = FlatPoseEmbedding.NUM_DIMS;
+
+  static final int EMBEDDING_SIZE = FlatPoseEmbedding.SIZE;
+
+  private final Map<String, Integer> classIds = new LinkedHashMap<>();
+  private final List<Integer> sampleClassIds = new ArrayList<>();
+  private final List<float[]> embeddings = new ArrayList<>();
+  private int skippedLines;
+
+  /** Adds every valid line of the csv. Invalid lines are skipped, like the app's csv loader. */
+  void addAll(BufferedReader reader, String separator) throws IOException {
+    String csvLine = reader.readLine();
+    while (csvLine != null) {
+      if (!add(csvLine, separator)) {
+        skippedLines++;
+      }
+      csvLine = reader.readLine();
+    }
+  }
+
+  int getSampleCount() {
+    return embeddings.size();
+  }
+
+  int getSkippedLines() {
+    return skippedLines;
+  }
+
+  private boolean add(String csvLine, String separator) {
+    // Same as Splitter.onPattern(separator), which keeps trailing empty tokens.
+    String[] tokens = csvLine.split(separator, -1);
+    // Format is expected to be Name,Class,X1,Y1,Z1,X2,Y2,Z2...
+    if (tokens.length != NUM_LANDMARKS * NUM_DIMS + 2) {
+      return false;
+    }
+    float[] landmarks = new float[NUM_LANDMARKS * NUM_DIMS];
+    try {
+      for (int i = 0; i < landmarks.length; i++) {
+        landmarks[i] = Float.parseFloat(tokens[i + 2]);
+      }
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    Integer classId = classIds.get(tokens[1]);
+    if (classId == null) {
+      classId = classIds.size();
+      classIds.put(tokens[1], classId);
+    }
+    sampleClassIds.add(classId);
+    float[] embedding = new float[EMBEDDING_SIZE];
+    FlatPoseEmbedding.compute(landmarks, embedding);
+    embeddings.add(embedding);
+    return true;
+  }
+
+  void writeTo(OutputStream output) throws IOException {
+    List<byte[]> classNames = new ArrayList<>();
+    int size = 5 * Integer.BYTES;
+    for (String className : classIds.keySet()) {
+      byte[] bytes = className.getBytes(StandardCharsets.UTF_8);
+      classNames.add(bytes);
+      size += Integer.BYTES + align(bytes.length);
+    }
+    size += embeddings.size() * (Integer.BYTES + EMBEDDING_SIZE * Float.BYTES);
+
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(EMBEDDING_SIZE).putInt(classNames.size());
+    for (byte[] bytes : classNames) {
+      buffer.putInt(bytes.length).put(bytes);
+      buffer.position(align(buffer.position()));
+    }
+    buffer.putInt(embeddings.size());
+    for (int classId : sampleClassIds) {
+      buffer.putInt(classId);
+    }
+    for (float[] embedding : embeddings) {
+      for (float value : embedding) {
+        buffer.putFloat(value);
+      }
+    }
+    output.write(buffer.array());
+  }
+
+  private static int align(int position) {
+    return (position + 3) & ~3;
+  }
+}